@@ -0,0 +1,208 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jakarta.mail.MessagingException;
+
+import jenkins.util.SystemProperties;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Stop talking to the SMTP relay once it keeps failing.
+ * <p>
+ * After a number of consecutive failures the circuit opens and sends fail
+ * immediately with {@link OpenException} instead of waiting for the connect
+ * timeout. Once the open period elapses a single probe is let through. The
+ * circuit closes when the probe succeeds and opens again when it fails.
+ */
+@Restricted(NoExternalUse.class)
+public final class CircuitBreaker {
+
+    private static final Logger LOGGER = Logger.getLogger(
+            CircuitBreaker.class.getName()
+    );
+
+    private static final String PREFIX = CircuitBreaker.class.getName();
+
+    /*package*/ static final int FAILURES = SystemProperties.getInteger(PREFIX + ".failures", 5);
+    /*package*/ static final long OPEN_MILLIS = TimeUnit.SECONDS.toMillis(SystemProperties.getLong(PREFIX + ".openSeconds", 60L));
+
+    private static final CircuitBreaker INSTANCE = new CircuitBreaker(FAILURES, OPEN_MILLIS);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int threshold;
+    private final long openMillis;
+
+    // Everything below is guarded by this
+    private @NonNull State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+    private long rejected;
+    private @CheckForNull String lastFailure;
+
+    /*package*/ CircuitBreaker(final int threshold, final long openMillis) {
+
+        this.threshold = Math.max(1, threshold);
+        this.openMillis = openMillis;
+    }
+
+    /*package*/ static @NonNull CircuitBreaker get() {
+
+        return INSTANCE;
+    }
+
+    /**
+     * Ask for permission to contact the relay.
+     *
+     * @throws OpenException if the relay is not to be contacted now
+     */
+    /*package*/ void acquire() throws OpenException {
+
+        acquire(System.currentTimeMillis());
+    }
+
+    /*package*/ synchronized void acquire(final long now) throws OpenException {
+
+        if (state == State.OPEN && now - openedAt >= openMillis) {
+
+            transition(State.HALF_OPEN);
+        }
+
+        if (state == State.CLOSED) return;
+
+        if (state == State.HALF_OPEN && !probing) {
+
+            probing = true;
+            return;
+        }
+
+        rejected++;
+        throw new OpenException(lastFailure);
+    }
+
+    /**
+     * Permission was not used, the relay was not contacted after all.
+     */
+    /*package*/ synchronized void release() {
+
+        probing = false;
+    }
+
+    /**
+     * Relay accepted the connection.
+     */
+    /*package*/ synchronized void success() {
+
+        failures = 0;
+        probing = false;
+        if (state != State.CLOSED) {
+
+            transition(State.CLOSED);
+        }
+    }
+
+    /**
+     * Relay could not be contacted.
+     */
+    /*package*/ void failure(final @NonNull Exception cause) {
+
+        failure(cause, System.currentTimeMillis());
+    }
+
+    /*package*/ synchronized void failure(final @NonNull Exception cause, final long now) {
+
+        failures++;
+        lastFailure = cause.toString();
+
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= threshold)) {
+
+            probing = false;
+            openedAt = now;
+            transition(State.OPEN);
+        }
+    }
+
+    private void transition(final @NonNull State target) {
+
+        final Level level = target == State.OPEN ? Level.WARNING : Level.INFO;
+        LOGGER.log(level, "mail-watcher-plugin: SMTP circuit {0}, consecutive failures: {1}, last: {2}", new Object[] {
+                target, failures, lastFailure
+        });
+        state = target;
+    }
+
+    public synchronized @NonNull State getState() {
+
+        return state;
+    }
+
+    public synchronized int getFailures() {
+
+        return failures;
+    }
+
+    /**
+     * Time the circuit was opened last.
+     *
+     * @return 0 if it was never opened
+     */
+    public synchronized long getOpenedAt() {
+
+        return openedAt;
+    }
+
+    public synchronized long getRejected() {
+
+        return rejected;
+    }
+
+    public synchronized @CheckForNull String getLastFailure() {
+
+        return lastFailure;
+    }
+
+    /**
+     * Send refused without contacting the relay.
+     */
+    public static final class OpenException extends MessagingException {
+
+        private static final long serialVersionUID = 1L;
+
+        /*package*/ OpenException(final @CheckForNull String lastFailure) {
+
+            super("SMTP circuit is open, last failure: " + lastFailure);
+        }
+    }
+}
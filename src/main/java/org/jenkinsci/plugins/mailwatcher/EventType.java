@@ -0,0 +1,46 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+/**
+ * Kind of event a notification reports.
+ */
+public enum EventType {
+
+    JOB_RENAMED,
+    JOB_UPDATED,
+    JOB_DELETED,
+    JOB_MOVED,
+    COMPUTER_ONLINE,
+    COMPUTER_OFFLINE,
+    COMPUTER_TEMPORARILY_ONLINE,
+    COMPUTER_TEMPORARILY_OFFLINE,
+    COMPUTER_FLAPPING,
+    COMPUTER_STABLE,
+    NODE_RELEASED,
+    COMPUTERS_RECONNECTED,
+    DIGEST,
+    RATE_LIMIT_SUMMARY,
+    OTHER
+}
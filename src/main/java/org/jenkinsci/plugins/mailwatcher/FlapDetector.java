@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Detect computers flapping between online and offline.
+ * <p>
+ * Only the timestamps of the last few transitions are kept per computer and
+ * entries of computers that are quiet for the whole window are removed, so
+ * the map only holds computers that recently changed their state.
+ */
+/*package*/ final class FlapDetector {
+
+    /*package*/ enum Verdict {
+        /** Report the transition. */
+        NOTIFY,
+        /** Computer has just started flapping. */
+        FLAPPING,
+        /** Computer is flapping, do not report. */
+        SUPPRESS
+    }
+
+    private final @NonNull IntSupplier transitions;
+    private final @NonNull LongSupplier window;
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+
+    /**
+     * @param transitions Number of transitions considered flapping. Values below 2 disable detection.
+     * @param window Milliseconds the transitions need to fit in.
+     */
+    /*package*/ FlapDetector(final @NonNull IntSupplier transitions, final @NonNull LongSupplier window) {
+
+        this.transitions = transitions;
+        this.window = window;
+    }
+
+    /*package*/ @NonNull Verdict transition(final @NonNull String computer, final boolean online, final long now) {
+
+        final int threshold = transitions.getAsInt();
+        final long window = this.window.getAsLong();
+        if (threshold < 2 || window <= 0) {
+
+            states.remove(computer);
+            return Verdict.NOTIFY;
+        }
+
+        final Verdict[] verdict = { Verdict.NOTIFY };
+        states.compute(computer, (name, state) -> {
+
+            if (state == null || state.times.length != threshold) {
+
+                state = new State(threshold);
+            }
+
+            state.record(now, online);
+            if (state.flapping) {
+
+                verdict[0] = Verdict.SUPPRESS;
+            } else if (state.isFull() && now - state.oldest() <= window) {
+
+                state.flapping = true;
+                verdict[0] = Verdict.FLAPPING;
+            }
+
+            return state;
+        });
+
+        return verdict[0];
+    }
+
+    /**
+     * Forget computers quiet for the whole window.
+     *
+     * @return Computers that were flapping and are stable now, mapped to whether they are online.
+     */
+    /*package*/ @NonNull Map<String, Boolean> stabilize(final long now) {
+
+        final long window = this.window.getAsLong();
+        final Map<String, Boolean> stable = new LinkedHashMap<>();
+        for (String computer: states.keySet()) {
+
+            states.computeIfPresent(computer, (name, state) -> {
+
+                if (now - state.last() < window) return state;
+
+                if (state.flapping) {
+
+                    stable.put(name, state.online);
+                }
+
+                return null;
+            });
+        }
+
+        return stable;
+    }
+
+    /*package*/ int size() {
+
+        return states.size();
+    }
+
+    private static final class State {
+
+        // Ring of most recent transitions, next points to the oldest once full
+        private final long[] times;
+        private int next;
+        private int count;
+        private boolean online;
+        private boolean flapping;
+
+        private State(final int size) {
+
+            this.times = new long[size];
+        }
+
+        private void record(final long now, final boolean online) {
+
+            times[next] = now;
+            next = (next + 1) % times.length;
+            if (count < times.length) count++;
+            this.online = online;
+        }
+
+        private boolean isFull() {
+
+            return count == times.length;
+        }
+
+        private long oldest() {
+
+            return isFull() ? times[next] : times[0];
+        }
+
+        private long last() {
+
+            return times[(next + times.length - 1) % times.length];
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.tasks.Mailer;
+
+import java.util.Objects;
+
+import jakarta.mail.Session;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+
+/**
+ * Mail session and sender addresses reused between messages.
+ * <p>
+ * The session is rebuilt only when the SMTP settings of the Mailer global
+ * configuration change. Sender and Reply-To addresses are parsed again only
+ * when the configured value differs from the one seen last time.
+ */
+/*package*/ final class MailSessionCache {
+
+    private static final MailSessionCache INSTANCE = new MailSessionCache();
+
+    private volatile Cached<SmtpSettings, Session> session;
+    private volatile Cached<String, InternetAddress> from;
+    private volatile Cached<String, InternetAddress[]> replyTo;
+
+    /*package*/ static @NonNull MailSessionCache get() {
+
+        return INSTANCE;
+    }
+
+    /*package*/ @NonNull Session session(final @NonNull Mailer.DescriptorImpl descriptor) {
+
+        final SmtpSettings settings = SmtpSettings.of(descriptor);
+        Cached<SmtpSettings, Session> cached = session;
+        if (cached == null || !cached.key.equals(settings)) {
+
+            cached = new Cached<>(settings, descriptor.createSession());
+            session = cached;
+        }
+
+        return cached.value;
+    }
+
+    /*package*/ @NonNull InternetAddress from(final String adminAddress) throws AddressException {
+
+        Cached<String, InternetAddress> cached = from;
+        if (cached == null || !Objects.equals(cached.key, adminAddress)) {
+
+            cached = new Cached<>(adminAddress, new InternetAddress(adminAddress));
+            from = cached;
+        }
+
+        return cached.value;
+    }
+
+    /**
+     * @return Parsed addresses or null when no Reply-To is configured.
+     */
+    /*package*/ @CheckForNull InternetAddress[] replyTo(final String replyToAddress) throws AddressException {
+
+        if (replyToAddress == null) return null;
+
+        Cached<String, InternetAddress[]> cached = replyTo;
+        if (cached == null || !cached.key.equals(replyToAddress)) {
+
+            cached = new Cached<>(replyToAddress, InternetAddress.parse(replyToAddress));
+            replyTo = cached;
+        }
+
+        return cached.value.clone();
+    }
+
+    private static final class Cached<K, V> {
+
+        private final K key;
+        private final V value;
+
+        private Cached(final K key, final V value) {
+
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.Util;
+import hudson.util.FormValidation;
+import net.sf.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import jenkins.model.GlobalConfiguration;
+import jenkins.model.Jenkins;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest2;
+
+/**
+ * Global configuration of the notification delivery.
+ */
+@Extension @Symbol("mailWatcher")
+public class MailWatcherConfiguration extends GlobalConfiguration {
+
+    public static final String DEFAULT_SUBJECT_TEMPLATE = "mail-watcher-plugin: ${subject}";
+    public static final String DEFAULT_BODY_TEMPLATE = "${pairs}\n\n${body}";
+
+    // Every computer keeps the times of this many transitions
+    /*package*/ static final int MAX_FLAP_TRANSITIONS = 100;
+
+    // Used when Jenkins is not running
+    private static final MailWatcherConfiguration DEFAULTS = new MailWatcherConfiguration(false);
+
+    private boolean digest;
+    private int digestMinutes = 10;
+    private int debounceSeconds = 0;
+    private int coalesceSeconds = 0;
+    private int flapTransitions = 0;
+    private int flapMinutes = 10;
+    private int graceSeconds = 0;
+    private boolean queueWhenCircuitOpen = true;
+    private int mailsPerMinute = 0;
+    private int mailsPerRecipientPerMinute = 0;
+    private String subjectTemplate = DEFAULT_SUBJECT_TEMPLATE;
+    private String bodyTemplate = DEFAULT_BODY_TEMPLATE;
+    private List<NotificationTemplate> templates = new ArrayList<>();
+
+    private transient volatile CompiledTemplates compiled;
+
+    public MailWatcherConfiguration() {
+
+        this(true);
+    }
+
+    private MailWatcherConfiguration(final boolean load) {
+
+        if (load) load();
+    }
+
+    public static @NonNull MailWatcherConfiguration get() {
+
+        return Jenkins.getInstanceOrNull() == null
+                ? DEFAULTS
+                : ExtensionList.lookupSingleton(MailWatcherConfiguration.class)
+        ;
+    }
+
+    /**
+     * Job changes are collected and sent as a single message per recipient.
+     */
+    public boolean isDigest() {
+
+        return digest;
+    }
+
+    @DataBoundSetter
+    public void setDigest(final boolean digest) {
+
+        this.digest = digest;
+    }
+
+    public int getDigestMinutes() {
+
+        return digestMinutes;
+    }
+
+    @DataBoundSetter
+    public void setDigestMinutes(final int digestMinutes) {
+
+        this.digestMinutes = Math.max(1, digestMinutes);
+    }
+
+    /*package*/ long digestMillis() {
+
+        return digestMinutes * 60_000L;
+    }
+
+    /**
+     * Updates of the same job closer to each other are reported together.
+     */
+    public int getDebounceSeconds() {
+
+        return debounceSeconds;
+    }
+
+    @DataBoundSetter
+    public void setDebounceSeconds(final int debounceSeconds) {
+
+        this.debounceSeconds = Math.max(0, debounceSeconds);
+    }
+
+    /*package*/ long debounceMillis() {
+
+        return debounceSeconds * 1000L;
+    }
+
+    /**
+     * Deletions and moves of jobs within the same folder closer to each other are reported together.
+     */
+    public int getCoalesceSeconds() {
+
+        return coalesceSeconds;
+    }
+
+    @DataBoundSetter
+    public void setCoalesceSeconds(final int coalesceSeconds) {
+
+        this.coalesceSeconds = Math.max(0, coalesceSeconds);
+    }
+
+    /*package*/ long coalesceMillis() {
+
+        return coalesceSeconds * 1000L;
+    }
+
+    /**
+     * Number of online/offline transitions within {@link #getFlapMinutes()} considered flapping.
+     */
+    public int getFlapTransitions() {
+
+        return flapTransitions;
+    }
+
+    @DataBoundSetter
+    public void setFlapTransitions(final int flapTransitions) {
+
+        this.flapTransitions = Math.min(MAX_FLAP_TRANSITIONS, Math.max(0, flapTransitions));
+    }
+
+    public int getFlapMinutes() {
+
+        return flapMinutes;
+    }
+
+    @DataBoundSetter
+    public void setFlapMinutes(final int flapMinutes) {
+
+        this.flapMinutes = Math.max(1, flapMinutes);
+    }
+
+    /*package*/ long flapMillis() {
+
+        return flapMinutes * 60_000L;
+    }
+
+    /**
+     * Time to wait for watched computers to reconnect after startup before reporting them in one summary.
+     */
+    public int getGraceSeconds() {
+
+        return graceSeconds;
+    }
+
+    @DataBoundSetter
+    public void setGraceSeconds(final int graceSeconds) {
+
+        this.graceSeconds = Math.max(0, graceSeconds);
+    }
+
+    /**
+     * Notifications refused while the SMTP relay is unavailable are kept in outbox rather than dropped.
+     */
+    public boolean isQueueWhenCircuitOpen() {
+
+        return queueWhenCircuitOpen;
+    }
+
+    @DataBoundSetter
+    public void setQueueWhenCircuitOpen(final boolean queueWhenCircuitOpen) {
+
+        this.queueWhenCircuitOpen = queueWhenCircuitOpen;
+    }
+
+    /**
+     * Mails sent per minute at most, 0 for no limit.
+     */
+    public int getMailsPerMinute() {
+
+        return mailsPerMinute;
+    }
+
+    @DataBoundSetter
+    public void setMailsPerMinute(final int mailsPerMinute) {
+
+        this.mailsPerMinute = Math.max(0, mailsPerMinute);
+    }
+
+    /**
+     * Mails sent per minute to a single recipient at most, 0 for no limit.
+     */
+    public int getMailsPerRecipientPerMinute() {
+
+        return mailsPerRecipientPerMinute;
+    }
+
+    @DataBoundSetter
+    public void setMailsPerRecipientPerMinute(final int mailsPerRecipientPerMinute) {
+
+        this.mailsPerRecipientPerMinute = Math.max(0, mailsPerRecipientPerMinute);
+    }
+
+    public @NonNull String getSubjectTemplate() {
+
+        return subjectTemplate;
+    }
+
+    @DataBoundSetter
+    public void setSubjectTemplate(final String subjectTemplate) {
+
+        final String template = Util.fixEmptyAndTrim(subjectTemplate);
+        this.subjectTemplate = template == null ? DEFAULT_SUBJECT_TEMPLATE : template;
+        this.compiled = null;
+    }
+
+    public @NonNull String getBodyTemplate() {
+
+        return bodyTemplate;
+    }
+
+    @DataBoundSetter
+    public void setBodyTemplate(final String bodyTemplate) {
+
+        this.bodyTemplate = Util.fixEmpty(bodyTemplate) == null ? DEFAULT_BODY_TEMPLATE : bodyTemplate;
+        this.compiled = null;
+    }
+
+    /**
+     * Templates overriding the global ones for particular event types.
+     */
+    public @NonNull List<NotificationTemplate> getTemplates() {
+
+        return Collections.unmodifiableList(templates);
+    }
+
+    @DataBoundSetter
+    public void setTemplates(final List<NotificationTemplate> templates) {
+
+        this.templates = templates == null ? new ArrayList<>() : new ArrayList<>(templates);
+        this.compiled = null;
+    }
+
+    /*package*/ @NonNull Template subjectTemplate(final @NonNull EventType type) {
+
+        return compiled().subjects.get(type);
+    }
+
+    /*package*/ @NonNull Template bodyTemplate(final @NonNull EventType type) {
+
+        return compiled().bodies.get(type);
+    }
+
+    private @NonNull CompiledTemplates compiled() {
+
+        CompiledTemplates compiled = this.compiled;
+        if (compiled == null) {
+
+            compiled = new CompiledTemplates(subjectTemplate, bodyTemplate, templates);
+            this.compiled = compiled;
+        }
+
+        return compiled;
+    }
+
+    public FormValidation doCheckDigestMinutes(@QueryParameter final int value) {
+
+        return value > 0
+                ? FormValidation.ok()
+                : FormValidation.error("Digest window needs to be at least one minute")
+        ;
+    }
+
+    public FormValidation doCheckFlapTransitions(@QueryParameter final int value) {
+
+        if (value < 0) return FormValidation.error("Number of transitions cannot be negative");
+        if (value > MAX_FLAP_TRANSITIONS) return FormValidation.error(
+                "Computer flapping is detected after " + MAX_FLAP_TRANSITIONS + " transitions at most"
+        );
+        if (value == 1) return FormValidation.warning(
+                "Flapping is detected after 2 transitions at least, every transition is reported"
+        );
+
+        return FormValidation.ok();
+    }
+
+    @Override
+    public boolean configure(final StaplerRequest2 req, final JSONObject json) throws FormException {
+
+        // Not submitted when all were removed
+        setTemplates(null);
+        req.bindJSON(this, json);
+        save();
+        return true;
+    }
+
+    @Override @NonNull
+    public String getDisplayName() {
+
+        return "Mail Watcher";
+    }
+
+    /**
+     * Templates parsed for every event type.
+     */
+    private static final class CompiledTemplates {
+
+        private final Map<EventType, Template> subjects = new EnumMap<>(EventType.class);
+        private final Map<EventType, Template> bodies = new EnumMap<>(EventType.class);
+
+        private CompiledTemplates(
+                final @NonNull String subject, final @NonNull String body, final @NonNull List<NotificationTemplate> overrides
+        ) {
+
+            final Template defaultSubject = Template.compile(subject);
+            final Template defaultBody = Template.compile(body);
+            for (EventType type: EventType.values()) {
+
+                subjects.put(type, defaultSubject);
+                bodies.put(type, defaultBody);
+            }
+
+            for (NotificationTemplate override: overrides) {
+
+                if (override.getSubject() != null) subjects.put(override.getEventType(), Template.compile(override.getSubject()));
+                if (override.getBody() != null) bodies.put(override.getEventType(), Template.compile(override.getBody()));
+            }
+        }
+    }
+}
@@ -25,8 +25,16 @@ package org.jenkinsci.plugins.mailwatcher;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.XmlFile;
+import hudson.model.Job;
+import hudson.model.Saveable;
 import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
 import hudson.plugins.jobConfigHistory.JobConfigHistory;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
 import hudson.tasks.Mailer;
 import hudson.util.FormValidation;
 
@@ -36,7 +44,7 @@ import java.util.Date;
 
 import jakarta.mail.Message;
 import jakarta.mail.MessagingException;
-import jakarta.mail.Transport;
+import jakarta.mail.SendFailedException;
 import jakarta.mail.internet.AddressException;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
@@ -48,31 +56,79 @@ import jenkins.model.JenkinsLocationConfiguration;
 import org.jenkinsci.plugins.mailwatcher.jobConfigHistory.ConfigHistory;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
 
 /**
  * Send email notification.
+ * <p>
+ * Single instance is shared by all the listeners. Mailer configuration and Jenkins root url
+ * are looked up on first use, not when extensions are loaded.
  *
  * @author ogondza
  */
+@Extension
 public class MailWatcherMailer {
 
-    private final @NonNull Mailer.DescriptorImpl mailerDescriptor;
-    private final @NonNull Jenkins jenkins;
-    private final @NonNull ConfigHistory configHistory;
+    // Resolved lazily
+    private volatile Mailer.DescriptorImpl mailerDescriptor;
+    private volatile ConfigHistory configHistory;
+    private volatile String rootUrl;
 
-    /*package*/ MailWatcherMailer(final @NonNull Jenkins jenkins) {
+    @Restricted(NoExternalUse.class)
+    public MailWatcherMailer() {
+    }
+
+    /**
+     * Mailer shared by the listeners of the running Jenkins instance.
+     */
+    /*package*/ static @NonNull MailWatcherMailer get() {
+
+        return ExtensionList.lookupSingleton(MailWatcherMailer.class);
+    }
+
+    private @NonNull Mailer.DescriptorImpl mailerDescriptor() {
+
+        Mailer.DescriptorImpl descriptor = mailerDescriptor;
+        if (descriptor == null) {
+
+            descriptor = Jenkins.get().getDescriptorByType(Mailer.DescriptorImpl.class);
+            mailerDescriptor = descriptor;
+        }
 
-        this.jenkins = jenkins;
-        this.mailerDescriptor = jenkins.getDescriptorByType(Mailer.DescriptorImpl.class);
-        this.configHistory = new ConfigHistory(plugin(JobConfigHistory.class));
+        return descriptor;
     }
 
-    /*package*/ @NonNull User getDefaultInitiator() {
+    /**
+     * Jenkins root url, cached until the location configuration changes.
+     * <p>
+     * Listeners created by Jenkins pass no root url so notifications resolve it here.
+     */
+    /*package*/ @CheckForNull String rootUrl() {
+
+        String url = rootUrl;
+        if (url == null) {
+
+            url = Jenkins.get().getRootUrl();
+            // Derived from the current request unless configured
+            if (JenkinsLocationConfiguration.get().getUrl() != null) {
+
+                rootUrl = url;
+            }
+        }
+
+        return url;
+    }
+
+    /**
+     * Id of the user acting on the current thread, the user itself is not loaded.
+     */
+    /*package*/ @NonNull String initiatorId() {
 
-        final User current = User.current();
-        return current != null
-                ? current
-                : User.getUnknown()
+        final Authentication auth = Jenkins.getAuthentication2();
+        return auth instanceof AnonymousAuthenticationToken
+                ? User.getUnknown().getId()
+                : auth.getName()
         ;
     }
 
@@ -86,7 +142,7 @@ public class MailWatcherMailer {
 
         try {
 
-            return new URL(jenkins.getRootUrl() + url);
+            return new URL(rootUrl() + url);
         } catch (MalformedURLException ex) {
 
             throw new AssertionError(ex);
@@ -95,7 +151,37 @@ public class MailWatcherMailer {
 
     /*package*/ @NonNull ConfigHistory configHistory() {
 
-        return configHistory;
+        ConfigHistory history = configHistory;
+        if (history == null) {
+
+            synchronized (this) {
+
+                history = configHistory;
+                if (history == null) {
+
+                    history = new ConfigHistory(plugin(JobConfigHistory.class));
+                    configHistory = history;
+                }
+            }
+        }
+
+        return history;
+    }
+
+    /**
+     * Look the job up by full name, whoever the notification is built by.
+     *
+     * @return null if there is no such job anymore
+     */
+    /*package*/ @CheckForNull Job<?, ?> job(final @NonNull String fullName) {
+
+        final Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) return null;
+
+        try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+
+            return jenkins.getItemByFullName(fullName, Job.class);
+        }
     }
 
     /**
@@ -109,33 +195,139 @@ public class MailWatcherMailer {
 
         if (!notification.shouldNotify()) return null;
 
-        final InternetAddress[] recipients = InternetAddress.parse(
-                notification.getRecipients()
-        );
+        InternetAddress[] recipients = notification.recipients().addresses();
 
         if (recipients.length == 0) return null;
 
-        final MimeMessage msg = new MimeMessage(mailerDescriptor.createSession());
+        // Mail that is not even attempted while the circuit is open takes no tokens
+        final CircuitBreaker breaker = CircuitBreaker.get();
+        breaker.acquire();
+        boolean attempted = false;
+        try {
+
+            final RateLimiter limiter = RateLimiter.get();
+            if (notification.rateLimited()) {
+
+                recipients = limiter.permit(notification, recipients);
+                if (recipients.length == 0) return null;
+            } else {
+
+                limiter.consume(recipients);
+            }
+            notification.addressed(recipients);
+
+            final MimeMessage msg = message(
+                    recipients, notification.getMailSubject(), notification.getMailBody()
+            );
+
+            attempted = true;
+            send(msg);
+
+            return msg;
+        } finally {
+
+            if (!attempted) breaker.release();
+        }
+    }
+
+    /**
+     * Send mail queued in outbox.
+     */
+    /*package*/ @NonNull MimeMessage send(final @NonNull Outbox.Mail mail) throws MessagingException {
+
+        final Recipients addressed = Recipients.of(mail.recipients);
+        final InternetAddress[] recipients = addressed == null ? new InternetAddress[0] : addressed.addresses();
+
+        final CircuitBreaker breaker = CircuitBreaker.get();
+        breaker.acquire();
+        boolean attempted = false;
+        try {
+
+            RateLimiter.get().acquire(recipients);
+
+            final MimeMessage msg = message(recipients, mail.subject, mail.body);
+
+            attempted = true;
+            send(msg);
+
+            return msg;
+        } finally {
+
+            if (!attempted) breaker.release();
+        }
+    }
+
+    /*package*/ @NonNull MimeMessage message(
+            final InternetAddress[] recipients, final String subject, final String body
+    ) throws MessagingException {
+
+        final MailSessionCache cache = MailSessionCache.get();
+        final MimeMessage msg = new MimeMessage(cache.session(mailerDescriptor()));
         final JenkinsLocationConfiguration jenkinsLocationConfiguration = JenkinsLocationConfiguration.get();
-        msg.setFrom(new InternetAddress(jenkinsLocationConfiguration.getAdminAddress()));
-        final String replyToAddress = mailerDescriptor.getReplyToAddress();
-        if (replyToAddress != null) {
-            msg.setReplyTo(InternetAddress.parse(replyToAddress));
+        msg.setFrom(cache.from(jenkinsLocationConfiguration.getAdminAddress()));
+        final InternetAddress[] replyTo = cache.replyTo(mailerDescriptor().getReplyToAddress());
+        if (replyTo != null) {
+            msg.setReplyTo(replyTo);
         }
 
         msg.setSentDate(new Date());
-        msg.setSubject(notification.getMailSubject());
-        msg.setText(notification.getMailBody());
+        msg.setSubject(subject);
+        msg.setText(body);
         msg.setRecipients(Message.RecipientType.TO, recipients);
 
-        send(msg);
-
         return msg;
     }
 
+    /**
+     * Send the message to the relay, the caller has acquired the circuit breaker already.
+     */
     @Restricted(NoExternalUse.class)
     /*package*/ void send(final MimeMessage msg) throws MessagingException {
-        Transport.send(msg);
+
+        final CircuitBreaker breaker = CircuitBreaker.get();
+        final NotificationMetrics metrics = NotificationMetrics.get();
+        final long start = System.nanoTime();
+        try {
+
+            SmtpTransportPool.get().send(SmtpSettings.of(mailerDescriptor()), msg);
+            metrics.smtp().record(System.nanoTime() - start);
+            breaker.success();
+        } catch (SendFailedException ex) {
+
+            metrics.failure(ex);
+            if (SmtpTransportPool.unavailable(ex)) {
+
+                breaker.failure(ex);
+            } else {
+
+                // Rejected by the relay that is up and running
+                breaker.success();
+            }
+            throw ex;
+        } catch (MessagingException | RuntimeException ex) {
+
+            metrics.failure(ex);
+            breaker.failure(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Refresh cached root url once the location is reconfigured.
+     */
+    @Extension
+    public static final class LocationListener extends SaveableListener {
+
+        @Override
+        public void onChange(final Saveable o, final XmlFile file) {
+
+            if (!(o instanceof JenkinsLocationConfiguration)) return;
+
+            for (MailWatcherMailer mailer: ExtensionList.lookup(MailWatcherMailer.class)) {
+
+                mailer.rootUrl = null;
+            }
+        }
     }
 
     /**
@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.ManagementLink;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Administrative overview of the notification delivery.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class MailWatcherManagementLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+
+        return "symbol-notifications";
+    }
+
+    @Override
+    public String getUrlName() {
+
+        return "mail-watcher";
+    }
+
+    @Override
+    public String getDisplayName() {
+
+        return "Mail Watcher";
+    }
+
+    @Override
+    public String getDescription() {
+
+        return "State of the SMTP relay and notifications waiting to be sent.";
+    }
+
+    @Override
+    public @NonNull Category getCategory() {
+
+        return Category.STATUS;
+    }
+
+    public @NonNull CircuitBreaker getCircuit() {
+
+        return CircuitBreaker.get();
+    }
+
+    /**
+     * @return null if the circuit was never opened
+     */
+    public @CheckForNull String getOpenedSince() {
+
+        final long openedAt = getCircuit().getOpenedAt();
+        return openedAt == 0
+                ? null
+                : Util.getTimeSpanString(System.currentTimeMillis() - openedAt)
+        ;
+    }
+
+    public int getDispatcherPending() {
+
+        return NotificationDispatcher.get().pending();
+    }
+
+    public int getOutboxPending() {
+
+        final Outbox outbox = Outbox.get();
+        return outbox == null ? 0 : outbox.pending();
+    }
+}
@@ -23,20 +23,30 @@
  */
 package org.jenkinsci.plugins.mailwatcher;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.model.User;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import jakarta.mail.Address;
 import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
 import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 
 /**
  * Abstract notification for Jenkins.
+ * <p>
+ * Notifications are queued, buffered and batched so they capture the event as strings only
+ * and never retain the job, computer or user they concern. The strings are captured on the
+ * listener thread, only watched resources get that far. The pairs rendered into the mail are
+ * computed by the sending thread, once per notification.
  *
  * @author ogondza
  */
@@ -48,18 +58,33 @@ public abstract class MailWatcherNotification {
 
     private static final String MAIL_WATCHER_PLUGIN = "mail-watcher-plugin: ";
 
+    /*package*/ static final String NEWLINE = System.lineSeparator();
+
+    // Rendering buffer reused by the sending threads
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+    private static final int MAX_BUFFER = 64 * 1024;
+
     final private String subject;
     final private String body;
-    final private String recipients;
+    final private Recipients recipients;
 
     final private String url;
     final private String resourceName;
-    final private User initiator;
+    final private String initiator;
 
     final private String jenkinsRootUrl;
+    final private EventType type;
+    final private String lane;
 
     final protected MailWatcherMailer mailer;
 
+    // System.nanoTime() of the submission
+    private volatile long submitted;
+    // Recipients the mail was addressed to, after the rate limit
+    private volatile InternetAddress[] addressed;
+    // Rendered into subject and body of every attempt and digest, computed once
+    private volatile Map<String, String> pairs;
+
     public MailWatcherNotification(final Builder builder) {
 
         this.subject = builder.subject;
@@ -71,10 +96,40 @@ public abstract class MailWatcherNotification {
         this.initiator = builder.initiator;
 
         this.jenkinsRootUrl = builder.jenkinsRootUrl;
+        this.type = builder.type;
+        this.lane = builder.lane;
 
         this.mailer = builder.mailer;
     }
 
+    /**
+     * Copy notification so subclasses can replace their own fields.
+     */
+    protected MailWatcherNotification(final MailWatcherNotification other) {
+
+        this(other, other.lane);
+    }
+
+    /**
+     * Copy notification to be sent in another lane, as when its resource moved.
+     */
+    protected MailWatcherNotification(final MailWatcherNotification other, final String lane) {
+
+        this.subject = other.subject;
+        this.body = other.body;
+        this.recipients = other.recipients;
+
+        this.url = other.url;
+        this.resourceName = other.resourceName;
+        this.initiator = other.initiator;
+
+        this.jenkinsRootUrl = other.jenkinsRootUrl;
+        this.type = other.type;
+        this.lane = lane;
+
+        this.mailer = other.mailer;
+    }
+
     protected String getSubject() {
 
         return subject;
@@ -87,9 +142,33 @@ public abstract class MailWatcherNotification {
 
     public String getRecipients() {
 
+        return recipients == null ? null : recipients.toString();
+    }
+
+    /*package*/ Recipients recipients() {
+
         return recipients;
     }
 
+    /**
+     * Parsed addresses of notifications combined per recipient.
+     *
+     * @return null if the addresses are malformed. The notification is then to be sent on its own so the regular
+     * delivery reports the problem.
+     */
+    /*package*/ static @CheckForNull InternetAddress[] addresses(final @CheckForNull Recipients recipients) {
+
+        if (recipients == null) return new InternetAddress[0];
+
+        try {
+
+            return recipients.addresses();
+        } catch (AddressException ex) {
+
+            return null;
+        }
+    }
+
     public String getUrl() {
 
         return url;
@@ -100,13 +179,37 @@ public abstract class MailWatcherNotification {
         return resourceName;
     }
 
+    /*package*/ String jenkinsRootUrl() {
+
+        return jenkinsRootUrl;
+    }
+
     private String getArtefactUrl() {
 
         return jenkinsRootUrl + this.getUrl();
     }
 
+    public @NonNull EventType getType() {
+
+        return type;
+    }
+
+    /**
+     * Resource the notification concerns, notifications of the same resource are sent in order.
+     */
+    /*package*/ String getLane() {
+
+        return lane;
+    }
+
     public User getInitiator() {
 
+        final User user = initiator == null ? null : User.getById(initiator, false);
+        return user != null ? user : User.getUnknown();
+    }
+
+    /*package*/ String getInitiatorId() {
+
         return initiator;
     }
 
@@ -115,56 +218,203 @@ public abstract class MailWatcherNotification {
         return recipients != null;
     }
 
+    /**
+     * Notification is subject to mail rate limits.
+     */
+    protected boolean rateLimited() {
+
+        return true;
+    }
+
     public final String getMailSubject() {
 
-        return MAIL_WATCHER_PLUGIN + this.getSubject();
+        return render(MailWatcherConfiguration.get().subjectTemplate(type));
     }
 
     public final String getMailBody() {
 
-        final StringBuilder body = new StringBuilder();
+        return render(MailWatcherConfiguration.get().bodyTemplate(type));
+    }
+
+    /**
+     * Pairs of the notification, computed by {@link #pairs()} on first use.
+     */
+    /*package*/ final @NonNull Map<String, String> getPairs() {
 
-        for (final Map.Entry<String, String> pair: pairs().entrySet()) {
+        Map<String, String> pairs = this.pairs;
+        if (pairs == null) {
 
-            body.append(pair(pair.getKey(), pair.getValue()));
+            // Computing them twice on a race is harmless
+            pairs = Collections.unmodifiableMap(pairs());
+            this.pairs = pairs;
         }
 
-        return body.append("\n\n")
-            .append(this.getBody())
-            .toString()
-        ;
+        return pairs;
     }
 
     protected @NonNull Map<String, String> pairs() {
 
-        final Map<String, String> pairs = new HashMap<>(2);
+        final Map<String, String> pairs = new LinkedHashMap<>(4);
         pairs.put("Url", this.getArtefactUrl());
-        pairs.put("Initiator", this.getInitiator().getId());
+        pairs.put("Initiator", initiator);
 
         return pairs;
     }
 
-    private String pair(final String key, final String value) {
+    // Variables do not render other templates so the buffer is never used twice at once
+    private @NonNull String render(final @NonNull Template template) {
+
+        final StringBuilder out = BUFFER.get();
+        try {
+
+            template.render(out, new Variables());
+            return out.toString();
+        } finally {
 
-        return String.format("%s: %s%n", key, value);
+            out.setLength(0);
+            if (out.capacity() > MAX_BUFFER) BUFFER.remove();
+        }
     }
 
+    /**
+     * Template variables of this notification.
+     * <p>
+     * <code>subject</code>, <code>body</code>, <code>name</code>, <code>url</code>,
+     * <code>type</code>, <code>pairs</code> and individual pairs by key.
+     */
+    private final class Variables implements Template.Variables {
+
+        @Override
+        public boolean append(final @NonNull String name, final @NonNull StringBuilder out) {
+
+            switch (name) {
+                case "subject":
+                    out.append(getSubject());
+                    return true;
+                case "body":
+                    out.append(getBody());
+                    return true;
+                case "name":
+                    out.append(getName());
+                    return true;
+                case "url":
+                    out.append(getArtefactUrl());
+                    return true;
+                case "type":
+                    out.append(type.name());
+                    return true;
+                case "pairs":
+                    for (final Map.Entry<String, String> pair: getPairs().entrySet()) {
+
+                        out.append(pair.getKey()).append(": ").append(pair.getValue()).append(NEWLINE);
+                    }
+                    return true;
+                default:
+                    final String value = getPairs().get(name);
+                    if (value == null) return false;
+
+                    out.append(value);
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * Hand the notification over for asynchronous delivery.
+     */
     public final void send() {
 
+        final NotificationMetrics metrics = NotificationMetrics.get();
+        metrics.record(type, NotificationMetrics.Outcome.SUBMITTED);
+        submitted = System.nanoTime();
+
+        if (!NotificationDispatcher.get().dispatch(this)) {
+
+            metrics.record(type, NotificationMetrics.Outcome.DROPPED);
+        }
+    }
+
+    /*package*/ final void deliver() {
+
+        final NotificationMetrics metrics = NotificationMetrics.get();
         try {
 
             final MimeMessage msg = mailer.send(this);
             if (msg != null) {
 
+                metrics.record(type, NotificationMetrics.Outcome.SENT);
+                metrics.delivery().record(System.nanoTime() - submitted);
                 log(MAIL_WATCHER_PLUGIN + "notified: " + this.getSubject());
+            } else {
+
+                metrics.record(type, NotificationMetrics.Outcome.SKIPPED);
             }
         } catch (AddressException ex) {
 
+            metrics.record(type, NotificationMetrics.Outcome.FAILED);
             log(MAIL_WATCHER_PLUGIN + "unable to parse address", ex);
+        } catch (CircuitBreaker.OpenException ex) {
+
+            if (retryLater(ex)) {
+
+                metrics.record(type, NotificationMetrics.Outcome.QUEUED);
+                log(MAIL_WATCHER_PLUGIN + "relay unavailable, queued for retry: " + this.getSubject());
+            } else {
+
+                metrics.record(type, NotificationMetrics.Outcome.DROPPED);
+                log(MAIL_WATCHER_PLUGIN + "relay unavailable, dropping: " + this.getSubject());
+            }
         } catch (MessagingException ex) {
 
-            log(MAIL_WATCHER_PLUGIN + "unable to notify", ex);
+            if (ex instanceof SendFailedException && SmtpTransportPool.rejected((SendFailedException) ex)) {
+
+                // Rejected for good, retrying would fail again or duplicate the mail for recipients it was sent to
+                metrics.record(type, NotificationMetrics.Outcome.FAILED);
+                log(MAIL_WATCHER_PLUGIN + "rejected by relay, dropping: " + this.getSubject(), ex);
+            } else if (retryLater(ex)) {
+
+                metrics.record(type, NotificationMetrics.Outcome.QUEUED);
+                log(MAIL_WATCHER_PLUGIN + "unable to notify, queued for retry: " + this.getSubject(), ex);
+            } else {
+
+                metrics.record(type, NotificationMetrics.Outcome.FAILED);
+                log(MAIL_WATCHER_PLUGIN + "unable to notify", ex);
+            }
+        } catch (RuntimeException ex) {
+
+            metrics.record(type, NotificationMetrics.Outcome.FAILED);
+            LOGGER.log(Level.WARNING, MAIL_WATCHER_PLUGIN + "failed to notify", ex);
+        }
+    }
+
+    private boolean retryLater(final MessagingException ex) {
+
+        if (recipients == null) return false;
+
+        if (ex instanceof CircuitBreaker.OpenException && !MailWatcherConfiguration.get().isQueueWhenCircuitOpen()) return false;
+
+        // Recipients held back are covered by the rate limit summary
+        Address[] addressed = this.addressed;
+        if (ex instanceof SendFailedException) {
+
+            // Recipients refused for good are not retried
+            final Address[] invalid = ((SendFailedException) ex).getInvalidAddresses();
+            if (invalid != null && invalid.length > 0) addressed = ((SendFailedException) ex).getValidUnsentAddresses();
         }
+
+        final Outbox outbox = Outbox.get();
+        return outbox != null && outbox.enqueue(
+                addressed == null ? recipients.toString() : InternetAddress.toString(addressed),
+                this.getMailSubject(), this.getMailBody()
+        );
+    }
+
+    /**
+     * Recipients the mail is being sent to.
+     */
+    /*package*/ void addressed(final @NonNull InternetAddress[] addressed) {
+
+        this.addressed = addressed;
     }
 
     private void log(String state) {
@@ -184,21 +434,28 @@ public abstract class MailWatcherNotification {
 
         private String subject = "";
         private String body = "";
-        private String recipients;
+        private Recipients recipients;
 
         private String url = "";
         private String resourceName = "";
-        private User initiator;
+        private String initiator;
+        private EventType type = EventType.OTHER;
+        private String lane;
 
         public Builder(final MailWatcherMailer mailer, final String jenkinsRootUrl) {
 
             this.mailer = mailer;
 
-            this.initiator = mailer.getDefaultInitiator();
-            this.jenkinsRootUrl = jenkinsRootUrl == null
-                    ? "/"
+            this.initiator = mailer.initiatorId();
+
+            final String rootUrl = jenkinsRootUrl == null
+                    ? mailer.rootUrl()
                     : jenkinsRootUrl
             ;
+            this.jenkinsRootUrl = rootUrl == null
+                    ? "/"
+                    : rootUrl
+            ;
         }
 
         public Builder subject(final String subject) {
@@ -215,10 +472,22 @@ public abstract class MailWatcherNotification {
 
         public Builder recipients(final String recipients) {
 
+            this.recipients = Recipients.of(recipients);
+            return this;
+        }
+
+        /*package*/ Builder recipients(final Recipients recipients) {
+
             this.recipients = recipients;
             return this;
         }
 
+        public Builder type(final EventType type) {
+
+            this.type = type;
+            return this;
+        }
+
         protected Builder url(final String url) {
 
             this.url = url;
@@ -231,8 +500,20 @@ public abstract class MailWatcherNotification {
             return this;
         }
 
+        protected Builder lane(final String lane) {
+
+            this.lane = lane;
+            return this;
+        }
+
         protected Builder initiator(final User initiator) {
 
+            this.initiator = initiator == null ? null : initiator.getId();
+            return this;
+        }
+
+        /*package*/ Builder initiatorId(final String initiator) {
+
             this.initiator = initiator;
             return this;
         }
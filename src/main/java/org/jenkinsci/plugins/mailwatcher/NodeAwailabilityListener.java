@@ -24,44 +24,53 @@
 package org.jenkinsci.plugins.mailwatcher;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
 import hudson.model.AbstractBuild;
 import hudson.model.Computer;
 import hudson.model.Executor;
 import hudson.model.Node;
+import hudson.model.Queue;
 import hudson.model.Run;
 import hudson.model.User;
 import hudson.model.listeners.RunListener;
+import hudson.slaves.ComputerListener;
 import hudson.slaves.OfflineCause;
 import hudson.tasks.Mailer;
 
-import java.util.Collections;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import jenkins.model.Jenkins;
 
+import org.jenkinsci.plugins.mailwatcher.workflow.NodeBlockListener;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
 @Extension
 public class NodeAwailabilityListener extends RunListener<Run<?, ?>> {
 
     private static final Logger LOGGER = Logger.getLogger(NodeAwailabilityListener.class.getName());
 
-    private static final List<String> IGNORED_CLASSES = Collections.singletonList(
-        "org.jenkinsci.plugins.workflow.job.WorkflowRun"
-    );
+    /**
+     * Builds and Pipeline node blocks still occupying computers put temporarily offline by a user, by computer name.
+     * Built-in node is an empty string.
+     */
+    private final ConcurrentMap<String, Occupants> draining = new ConcurrentHashMap<>();
 
     private final MailWatcherMailer mailer;
     private final String jenkinsRootUrl;
 
-    @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
     public NodeAwailabilityListener() {
 
-        this(
-                new MailWatcherMailer(Jenkins.get()),
-                Jenkins.get().getRootUrl()
-        );
+        this(MailWatcherMailer.get(), null);
     }
 
     public NodeAwailabilityListener(
@@ -77,21 +86,57 @@ public class NodeAwailabilityListener extends RunListener<Run<?, ?>> {
         this.jenkinsRootUrl = jenkinsRootUrl;
     }
 
-    private boolean isIgnoredRunClass(Run<?, ?> r) {
-        String runClassName = r.getClass().getCanonicalName();
-        return IGNORED_CLASSES.contains(runClassName);
+    @Restricted(NoExternalUse.class)
+    public static @NonNull NodeAwailabilityListener get() {
+
+        return ExtensionList.lookupSingleton(NodeAwailabilityListener.class);
     }
 
     @Override
     public void onFinalized(Run<?, ?> r) {
-        if (isIgnoredRunClass(r)) {
+        // Most builds run on computers nobody is draining
+        if (draining.isEmpty()) return;
+
+        if (r instanceof AbstractBuild) {
+
+            final String builtOn = ((AbstractBuild<?, ?>) r).getBuiltOnStr();
+            released(builtOn == null ? "" : builtOn, r);
             return;
         }
 
-        Computer computer = computer(r);
+        // Other runs do not tell where they ran, few computers are drained at a time
+        for (String nodeName: draining.keySet()) {
+
+            released(nodeName, r);
+        }
+    }
+
+    /**
+     * Build or Pipeline node block stopped occupying the computer.
+     *
+     * @param occupant The build, or the key of the node block as returned by {@link NodeBlockListener#open(String)}.
+     */
+    @Restricted(NoExternalUse.class)
+    public void released(final @NonNull String nodeName, final @NonNull Object occupant) {
+
+        final Occupants occupants = draining.get(nodeName);
+        if (occupants == null) return;
+
+        // Pipeline placeholders leave when their node block ends or their run is finalized, whichever comes later
+        occupants.release(occupant);
+        if (occupants.settle()) {
+
+            notifyReleased(nodeName, occupant);
+        }
+    }
+
+    private void notifyReleased(final @NonNull String nodeName, final @NonNull Object source) {
+
+        final Jenkins jenkins = Jenkins.get();
+        final Node node = nodeName.isEmpty() ? jenkins : jenkins.getNode(nodeName);
+        final Computer computer = node == null ? null : node.toComputer();
         if (computer == null) {
-            String msg = String.format("Unable to identify the slave of %s (%s)", r,  r.getClass());
-            LOGGER.log(Level.INFO, msg, new Exception());
+            LOGGER.log(Level.FINE, "Computer {0} released by {1} no longer exists", new Object[] {nodeName, source});
             return;
         }
 
@@ -100,16 +145,16 @@ public class NodeAwailabilityListener extends RunListener<Run<?, ?>> {
         User user = user(computer);
         if (user == null) return;
 
-        if (!isIdle(computer)) return;
-
         String address = user.getProperty(Mailer.UserProperty.class).getAddress();
 
         final String subject = "Jenkins computer '" + computer.getDisplayName() + "' you have put offline is no longer occupied";
-        getNotification().subject(subject)
+        getNotification().type(EventType.NODE_RELEASED)
+                .subject(subject)
                 .url(computer.getUrl())
+                .lane(computer.getName())
                 .recipients(address)
                 .initiator(user)
-                .send(r)
+                .send(source)
         ;
     }
 
@@ -122,27 +167,221 @@ public class NodeAwailabilityListener extends RunListener<Run<?, ?>> {
         return null;
     }
 
-    private @CheckForNull Computer computer(Run<?, ?> r) {
-        if (r instanceof AbstractBuild) {
-            Node node = ((AbstractBuild<?, ?>) r).getBuiltOn();
-            if (node != null) {
-                return node.toComputer();
+    /**
+     * Some computer is being drained so releasing executors needs to be reported.
+     */
+    @Restricted(NoExternalUse.class)
+    public boolean isDraining() {
+
+        return !draining.isEmpty();
+    }
+
+    /*package*/ boolean isDraining(final @NonNull Computer computer) {
+
+        return draining.containsKey(computer.getName());
+    }
+
+    /*package*/ int occupied(final @NonNull Computer computer) {
+
+        final Occupants occupants = draining.get(computer.getName());
+        return occupants == null ? -1 : occupants.size();
+    }
+
+    /**
+     * Start tracking builds and Pipeline node blocks to finish before the computer is released.
+     * <p>
+     * The computer is registered before its occupants are collected so nothing released meanwhile is missed.
+     * Occupants released before they were added are no longer running when collected the second time.
+     */
+    private void drain(final @NonNull Computer computer) {
+
+        final String name = computer.getName();
+        final Occupants occupants = new Occupants(computer);
+        draining.put(name, occupants);
+
+        occupants.addAll(occupants(computer));
+        if (occupants.retainAll(occupants(computer))) {
+
+            notifyReleased(name, computer);
+        }
+    }
+
+    /**
+     * Builds and Pipeline node blocks occupying the computer.
+     * <p>
+     * Every executable on its executors is counted, including completed builds not finalized yet, Pipeline
+     * placeholders and Pipelines on one-off executors.
+     */
+    private static @NonNull Set<Object> occupants(final @NonNull Computer computer) {
+
+        final Set<Object> occupants = executables(computer);
+
+        if (Jenkins.get().getPlugin("workflow-api") != null) {
+
+            occupants.addAll(NodeBlockListener.open(computer.getName()));
+        }
+
+        return occupants;
+    }
+
+    private static @NonNull Set<Object> executables(final @NonNull Computer computer) {
+
+        final Set<Object> executables = new HashSet<>();
+        for (Executor e: computer.getAllExecutors()) {
+
+            final Queue.Executable executable = e.getCurrentExecutable();
+            if (executable != null) {
+
+                executables.add(executable);
+            }
+        }
+
+        return executables;
+    }
+
+    /**
+     * Builds and Pipeline node blocks still occupying a drained computer.
+     * <p>
+     * Runs are released once finalized and node blocks once they end, neither needs the executors looked at.
+     * Other executables, like Pipeline placeholders, are dropped once they have left the executors of the
+     * computer. These are only looked for after all the runs and node blocks are gone.
+     */
+    private static final class Occupants {
+
+        private final @NonNull Computer computer;
+        // Runs and node blocks, released by their listeners
+        private final Set<Object> running = new HashSet<>();
+        // Executables that are not runs
+        private final Set<Object> placeholders = new HashSet<>();
+        // Released before the occupants were collected
+        private final Set<Object> released = new HashSet<>();
+        // Something occupied the computer when draining started
+        private boolean occupied;
+        private boolean collected;
+        private boolean reported;
+
+        private Occupants(final @NonNull Computer computer) {
+
+            this.computer = computer;
+        }
+
+        private synchronized void addAll(final @NonNull Set<Object> occupants) {
+
+            for (Object occupant: occupants) {
+
+                if (occupant instanceof Queue.Executable && !(occupant instanceof Run)) {
+
+                    placeholders.add(occupant);
+                } else {
+
+                    running.add(occupant);
+                }
+            }
+            running.removeAll(released);
+            placeholders.removeAll(released);
+            occupied = size() > 0;
+        }
+
+        /**
+         * Keep only those still running once collected again.
+         *
+         * @return true if the computer got released meanwhile.
+         */
+        private synchronized boolean retainAll(final @NonNull Set<Object> occupants) {
+
+            running.retainAll(occupants);
+            running.removeAll(released);
+            placeholders.retainAll(occupants);
+            placeholders.removeAll(released);
+            released.clear();
+            collected = true;
+            reported = occupied && size() == 0;
+            return reported;
+        }
+
+        private synchronized void release(final @NonNull Object occupant) {
+
+            if (collected) {
+
+                running.remove(occupant);
+                placeholders.remove(occupant);
+            } else {
+
+                released.add(occupant);
+            }
+        }
+
+        /**
+         * Drop placeholders that have left the computer once no run or node block is left to wait for.
+         *
+         * @return true if the last occupant left, only once.
+         */
+        private synchronized boolean settle() {
+
+            if (reported || !collected || !occupied || !running.isEmpty()) return false;
+
+            if (!placeholders.isEmpty()) {
+
+                placeholders.retainAll(executables(computer));
+            }
+
+            reported = placeholders.isEmpty();
+            return reported;
+        }
+
+        private synchronized int size() {
+
+            return running.size() + placeholders.size();
+        }
+    }
+
+    /**
+     * Pick up computers that were left temporarily offline before the restart.
+     */
+    @Initializer(after = InitMilestone.COMPLETED)
+    public static void scan() {
+
+        final NodeAwailabilityListener listener = get();
+        for (Computer computer: Jenkins.get().getComputers()) {
+
+            if (computer.isTemporarilyOffline() && computer.getOfflineCause() instanceof OfflineCause.UserCause) {
+
+                listener.drain(computer);
             }
         }
-        return null;
     }
 
-    private boolean isIdle(Computer computer) {
-        Thread current = Thread.currentThread();
-        for (Executor e: computer.getExecutors()) {
-            if (!e.isIdle() && e != current) return false;
+    /**
+     * Track computers being put temporarily offline and back.
+     */
+    @Extension
+    public static final class Draining extends ComputerListener {
+
+        @Override
+        public void onTemporarilyOffline(final Computer c, final OfflineCause cause) {
+
+            if (cause instanceof OfflineCause.UserCause) {
+
+                get().drain(c);
+            } else {
+
+                get().draining.remove(c.getName());
+            }
         }
 
-        for (Executor e: computer.getOneOffExecutors()) {
-            if (!e.isIdle() && e != current) return false;
+        @Override
+        public void onTemporarilyOnline(final Computer c) {
+
+            get().draining.remove(c.getName());
         }
 
-        return true;
+        @Override
+        public void onConfigurationChange() {
+
+            // Forget removed nodes, the built-in one is not listed among them
+            final Jenkins jenkins = Jenkins.get();
+            get().draining.keySet().removeIf(name -> !name.isEmpty() && jenkins.getNode(name) == null);
+        }
     }
 
     private Notification.Builder getNotification() {
@@ -0,0 +1,156 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import jakarta.mail.internet.InternetAddress;
+
+/**
+ * Collect job notifications per recipient and send them as a single message.
+ */
+/*package*/ final class NotificationDigest {
+
+    /*package*/ static final int MAX_ENTRIES = 500;
+    /*package*/ static final int MAX_RECIPIENTS = 10_000;
+
+    private final @NonNull MailWatcherMailer mailer;
+    private final String jenkinsRootUrl;
+    private final @NonNull WindowedBuffer<String, MailWatcherNotification> buffer;
+
+    /*package*/ NotificationDigest(final @NonNull MailWatcherMailer mailer, final String jenkinsRootUrl) {
+
+        this.mailer = mailer;
+        this.jenkinsRootUrl = jenkinsRootUrl;
+        this.buffer = new WindowedBuffer<>(
+                "digest", () -> MailWatcherConfiguration.get().digestMillis(), false,
+                MAX_ENTRIES, MAX_RECIPIENTS, this::send
+        );
+    }
+
+    /**
+     * Add notification to the digest of all its recipients.
+     *
+     * @return false if the notification is not subject to digest and should be sent right away.
+     */
+    /*package*/ boolean add(final @NonNull MailWatcherNotification notification) {
+
+        if (!MailWatcherConfiguration.get().isDigest() || !notification.shouldNotify()) return false;
+
+        final InternetAddress[] addresses = MailWatcherNotification.addresses(notification.recipients());
+        if (addresses == null || addresses.length == 0) return false;
+
+        for (final InternetAddress address: addresses) {
+
+            final String recipient = address.getAddress().toLowerCase(Locale.ENGLISH);
+            if (!buffer.add(recipient, notification)) {
+
+                send(recipient, Collections.singletonList(notification), 0);
+            }
+        }
+
+        return true;
+    }
+
+    /*package*/ @NonNull WindowedBuffer<String, MailWatcherNotification> buffer() {
+
+        return buffer;
+    }
+
+    private void send(final @NonNull String recipient, final @NonNull WindowedBuffer.Batch<MailWatcherNotification> batch) {
+
+        send(recipient, batch.events(), batch.dropped());
+    }
+
+    private void send(final String recipient, final List<MailWatcherNotification> entries, final int dropped) {
+
+        new Notification.Builder(mailer, jenkinsRootUrl)
+                .entries(entries, dropped)
+                .recipients(recipient)
+                .send(null)
+        ;
+    }
+
+    private static final class Notification extends MailWatcherNotification {
+
+        public Notification(final Builder builder) {
+
+            super(builder);
+        }
+
+        @Override
+        protected @NonNull Map<String, String> pairs() {
+
+            // Initiators are listed per entry
+            final Map<String, String> pairs = super.pairs();
+            pairs.remove("Initiator");
+            return pairs;
+        }
+
+        private static final class Builder extends MailWatcherNotification.Builder {
+
+            public Builder(final MailWatcherMailer mailer, final String jenkinsRootUrl) {
+
+                super(mailer, jenkinsRootUrl);
+                type(EventType.DIGEST);
+            }
+
+            public Builder entries(final List<MailWatcherNotification> entries, final int dropped) {
+
+                final int total = entries.size() + dropped;
+                subject(total == 1 ? "1 job change" : total + " job changes");
+
+                final StringBuilder body = new StringBuilder();
+                for (final MailWatcherNotification entry: entries) {
+
+                    body.append(entry.getSubject()).append(NEWLINE);
+                    for (final Map.Entry<String, String> pair: entry.getPairs().entrySet()) {
+
+                        body.append("    ").append(pair.getKey()).append(": ").append(pair.getValue()).append(NEWLINE);
+                    }
+                    body.append(NEWLINE);
+                }
+
+                if (dropped > 0) {
+
+                    body.append("... and ").append(dropped).append(" more changes").append(NEWLINE);
+                }
+
+                body(body.toString());
+                return this;
+            }
+
+            @Override
+            public void send(final Object o) {
+
+                new Notification(this).send();
+            }
+        }
+    }
+}
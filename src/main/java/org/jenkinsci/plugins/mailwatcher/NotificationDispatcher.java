@@ -0,0 +1,258 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.util.SystemProperties;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Deliver notifications off the listener thread.
+ * <p>
+ * Listeners hand over notifications and return immediately while a bounded
+ * pool of daemon threads talks to the SMTP relay. When the queue is full the
+ * notification is dropped and logged rather than blocking the caller.
+ * Pending notifications are drained when Jenkins terminates, those handed over afterwards are sent
+ * on the caller's thread.
+ * <p>
+ * Each thread serves its own lane. Notifications are assigned to lanes by the job or computer they
+ * concern, so those about the same resource are sent in order while unrelated ones are sent in parallel.
+ */
+@Restricted(NoExternalUse.class)
+public final class NotificationDispatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(
+            NotificationDispatcher.class.getName()
+    );
+
+    private static final String PREFIX = NotificationDispatcher.class.getName();
+
+    /**
+     * Termination milestone attained once buffered notifications are handed over to the dispatcher.
+     */
+    public static final String FLUSHED = "mail-watcher-plugin.buffers.flushed";
+
+    /**
+     * Termination milestone attained once queued notifications are sent.
+     */
+    public static final String DRAINED = "mail-watcher-plugin.dispatcher.drained";
+
+    /*package*/ static final int THREADS = SystemProperties.getInteger(PREFIX + ".threads", 2);
+    /*package*/ static final int QUEUE_DEPTH = SystemProperties.getInteger(PREFIX + ".queueDepth", 1000);
+    /*package*/ static final long DRAIN_SECONDS = SystemProperties.getLong(PREFIX + ".drainSeconds", 30L);
+
+    private static final NotificationDispatcher INSTANCE = new NotificationDispatcher(
+            THREADS, QUEUE_DEPTH
+    );
+
+    private final int threads;
+    private final int queueDepth;
+
+    // Notifications not yet picked up by any lane
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    // Null once drained, reopened when Jenkins is started again in the same JVM
+    private volatile ThreadPoolExecutor[] lanes;
+
+    /*package*/ NotificationDispatcher(final int threads, final int queueDepth) {
+
+        this.threads = Math.max(1, threads);
+        this.queueDepth = Math.max(1, queueDepth);
+        this.lanes = lanes(this.threads);
+    }
+
+    /*package*/ static @NonNull NotificationDispatcher get() {
+
+        return INSTANCE;
+    }
+
+    /**
+     * Queue notification for delivery.
+     *
+     * @return false if the notification was rejected
+     */
+    /*package*/ boolean dispatch(final @NonNull MailWatcherNotification notification) {
+
+        final ThreadPoolExecutor[] lanes = this.lanes;
+        if (lanes == null) {
+
+            deliverDrained(notification);
+            return true;
+        }
+
+        if (waiting.incrementAndGet() > queueDepth) {
+
+            waiting.decrementAndGet();
+            LOGGER.log(Level.WARNING, "mail-watcher-plugin: queue full, dropping: {0}", notification.getMailSubject());
+            return false;
+        }
+
+        try {
+
+            lane(lanes, notification.getLane()).execute(() -> {
+                waiting.decrementAndGet();
+                notification.deliver();
+            });
+        } catch (RejectedExecutionException ex) {
+
+            // Drained in the meantime
+            waiting.decrementAndGet();
+            deliverDrained(notification);
+        }
+        return true;
+    }
+
+    private void deliverDrained(final @NonNull MailWatcherNotification notification) {
+
+        LOGGER.log(Level.INFO, "mail-watcher-plugin: dispatcher drained, sending synchronously: {0}", notification.getMailSubject());
+        notification.deliver();
+    }
+
+    /*package*/ int pending() {
+
+        final ThreadPoolExecutor[] lanes = this.lanes;
+        if (lanes == null) return 0;
+
+        int pending = 0;
+        for (ThreadPoolExecutor lane: lanes) {
+
+            pending += lane.getQueue().size() + lane.getActiveCount();
+        }
+        return pending;
+    }
+
+    /**
+     * Lane serving the resource, notifications without one are spread evenly.
+     */
+    private static @NonNull ThreadPoolExecutor lane(final @NonNull ThreadPoolExecutor[] lanes, final String key) {
+
+        if (lanes.length == 1) return lanes[0];
+
+        final int hash = key == null ? ThreadLocalRandom.current().nextInt() : key.hashCode();
+        return lanes[Math.floorMod(hash ^ (hash >>> 16), lanes.length)];
+    }
+
+    private static @NonNull ThreadPoolExecutor[] lanes(final int threads) {
+
+        final ThreadPoolExecutor[] lanes = new ThreadPoolExecutor[threads];
+        for (int i = 0; i < threads; i++) {
+
+            // Single thread keeps the lane ordered, the queue is bounded by the waiting count
+            lanes[i] = new ThreadPoolExecutor(
+                    1, 1, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "mail-watcher-plugin dispatcher lane " + i)
+            );
+            lanes[i].allowCoreThreadTimeOut(true);
+        }
+
+        return lanes;
+    }
+
+    /**
+     * Accept notifications for asynchronous delivery again after being drained.
+     */
+    /*package*/ synchronized void open() {
+
+        if (lanes == null) {
+
+            lanes = lanes(threads);
+        }
+    }
+
+    /**
+     * Stop accepting new notifications and wait for queued ones to be sent.
+     */
+    /*package*/ void drain(final long timeout, final TimeUnit unit) {
+
+        final ThreadPoolExecutor[] draining;
+        synchronized (this) {
+
+            draining = lanes;
+            lanes = null;
+        }
+
+        if (draining == null) return;
+
+        for (ThreadPoolExecutor lane: draining) {
+
+            lane.shutdown();
+        }
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int abandoned = 0;
+        try {
+
+            for (ThreadPoolExecutor lane: draining) {
+
+                if (!lane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+
+                    abandoned += lane.shutdownNow().size();
+                }
+            }
+        } catch (InterruptedException ex) {
+
+            for (ThreadPoolExecutor lane: draining) {
+
+                abandoned += lane.shutdownNow().size();
+            }
+            Thread.currentThread().interrupt();
+        }
+
+        if (abandoned > 0) {
+
+            waiting.addAndGet(-abandoned);
+            LOGGER.log(Level.WARNING, "mail-watcher-plugin: {0} notifications not sent before shutdown", abandoned);
+        }
+    }
+
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void startup() {
+
+        INSTANCE.open();
+    }
+
+    @Terminator(requires = FLUSHED, attains = DRAINED)
+    public static void shutdown() {
+
+        INSTANCE.drain(DRAIN_SECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.sf.json.JSONObject;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Counters and latencies of the notification delivery.
+ * <p>
+ * Kept in memory since the start of Jenkins. Notifications are counted per
+ * {@link EventType} and {@link Outcome}, failures per exception type.
+ * Latencies are collected in histograms with fixed buckets so recording is
+ * cheap and percentiles are approximated by the bucket upper bound.
+ */
+@Restricted(NoExternalUse.class)
+public final class NotificationMetrics {
+
+    private static final NotificationMetrics INSTANCE = new NotificationMetrics();
+
+    public enum Outcome {
+        /** Handed over for delivery. */
+        SUBMITTED,
+        /** Added to digest. */
+        DIGESTED,
+        /** Mail was sent. */
+        SENT,
+        /** Nobody to notify. */
+        SKIPPED,
+        /** Some recipients held back by rate limit. */
+        HELD_BACK,
+        /** Discarded as the queue was full or the relay unavailable. */
+        DROPPED,
+        /** Sending failed. */
+        FAILED,
+        /** Persisted in outbox to be retried. */
+        QUEUED
+    }
+
+    private final Map<EventType, Map<Outcome, LongAdder>> events = new EnumMap<>(EventType.class);
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private final Histogram smtp = new Histogram();
+    private final Histogram delivery = new Histogram();
+
+    /*package*/ NotificationMetrics() {
+
+        for (EventType type: EventType.values()) {
+
+            final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+            for (Outcome outcome: Outcome.values()) {
+
+                outcomes.put(outcome, new LongAdder());
+            }
+            events.put(type, outcomes);
+        }
+    }
+
+    /*package*/ static @NonNull NotificationMetrics get() {
+
+        return INSTANCE;
+    }
+
+    /*package*/ void record(final @NonNull EventType type, final @NonNull Outcome outcome) {
+
+        events.get(type).get(outcome).increment();
+    }
+
+    /*package*/ long count(final @NonNull EventType type, final @NonNull Outcome outcome) {
+
+        return events.get(type).get(outcome).sum();
+    }
+
+    /**
+     * Failure to talk to the SMTP relay.
+     */
+    /*package*/ void failure(final @NonNull Throwable cause) {
+
+        failures.computeIfAbsent(cause.getClass().getName(), k -> new LongAdder()).increment();
+    }
+
+    /*package*/ long failures(final @NonNull Class<? extends Throwable> type) {
+
+        final LongAdder count = failures.get(type.getName());
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * Time the relay took to accept a message.
+     */
+    /*package*/ @NonNull Histogram smtp() {
+
+        return smtp;
+    }
+
+    /**
+     * Time from notification submission until it was sent.
+     */
+    /*package*/ @NonNull Histogram delivery() {
+
+        return delivery;
+    }
+
+    public @NonNull JSONObject toJson() {
+
+        final JSONObject json = new JSONObject();
+
+        final JSONObject events = new JSONObject();
+        for (Map.Entry<EventType, Map<Outcome, LongAdder>> type: this.events.entrySet()) {
+
+            final JSONObject outcomes = new JSONObject();
+            for (Map.Entry<Outcome, LongAdder> outcome: type.getValue().entrySet()) {
+
+                final long count = outcome.getValue().sum();
+                if (count > 0) outcomes.put(name(outcome.getKey()), count);
+            }
+
+            if (!outcomes.isEmpty()) events.put(name(type.getKey()), outcomes);
+        }
+        json.put("events", events);
+
+        final JSONObject failures = new JSONObject();
+        for (Map.Entry<String, LongAdder> failure: new TreeMap<>(this.failures).entrySet()) {
+
+            failures.put(failure.getKey(), failure.getValue().sum());
+        }
+        json.put("failures", failures);
+
+        final JSONObject latency = new JSONObject();
+        latency.put("smtp", smtp.toJson());
+        latency.put("delivery", delivery.toJson());
+        json.put("latencyMillis", latency);
+
+        return json;
+    }
+
+    private static @NonNull String name(final @NonNull Enum<?> constant) {
+
+        return constant.name().toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Latency distribution in buckets of exponentially growing size.
+     */
+    /*package*/ static final class Histogram {
+
+        // Upper bounds in milliseconds, the last bucket is unbounded
+        /*package*/ static final long[] BOUNDS = {
+                1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000, 2_000, 5_000, 10_000, 30_000, 60_000
+        };
+
+        private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+        private final LongAdder sum = new LongAdder();
+
+        private Histogram() {
+
+            for (int i = 0; i < buckets.length; i++) {
+
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /*package*/ void record(final long nanos) {
+
+            final long millis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, nanos));
+            int bucket = 0;
+            while (bucket < BOUNDS.length && millis > BOUNDS[bucket]) bucket++;
+
+            buckets[bucket].increment();
+            sum.add(millis);
+        }
+
+        /*package*/ long count() {
+
+            long count = 0;
+            for (LongAdder bucket: buckets) {
+
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        /**
+         * Upper bound of the bucket containing given percentile.
+         *
+         * @return -1 when empty or beyond the last bounded bucket
+         */
+        /*package*/ long percentile(final double percentile) {
+
+            final long[] counts = new long[buckets.length];
+            long count = 0;
+            for (int i = 0; i < buckets.length; i++) {
+
+                counts[i] = buckets[i].sum();
+                count += counts[i];
+            }
+
+            if (count == 0) return -1;
+
+            final long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+
+                seen += counts[i];
+                if (seen >= rank) return BOUNDS[i];
+            }
+
+            return -1;
+        }
+
+        private @NonNull JSONObject toJson() {
+
+            final JSONObject json = new JSONObject();
+            json.put("count", count());
+            json.put("sum", sum.sum());
+            json.put("p50", percentile(50));
+            json.put("p95", percentile(95));
+            json.put("p99", percentile(99));
+
+            final JSONObject buckets = new JSONObject();
+            for (int i = 0; i < this.buckets.length; i++) {
+
+                buckets.put(i < BOUNDS.length ? "le" + BOUNDS[i] : "inf", this.buckets[i].sum());
+            }
+            json.put("buckets", buckets);
+
+            return json;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import hudson.Extension;
+import hudson.model.RootAction;
+
+import java.io.IOException;
+
+import jenkins.model.Jenkins;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+
+/**
+ * Expose {@link NotificationMetrics} as JSON at {@code /mail-watcher-metrics/}.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class NotificationMetricsAction implements RootAction {
+
+    @Override
+    public String getIconFileName() {
+
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+
+        return "Mail Watcher Metrics";
+    }
+
+    @Override
+    public String getUrlName() {
+
+        return "mail-watcher-metrics";
+    }
+
+    public void doIndex(final StaplerRequest2 req, final StaplerResponse2 rsp) throws IOException {
+
+        Jenkins.get().checkPermission(Jenkins.SYSTEM_READ);
+
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().write(NotificationMetrics.get().toJson().toString(2));
+    }
+}
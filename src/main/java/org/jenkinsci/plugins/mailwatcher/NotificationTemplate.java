@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.ListBoxModel;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Subject and body template for particular kind of event, overriding the global ones.
+ */
+public class NotificationTemplate extends AbstractDescribableImpl<NotificationTemplate> {
+
+    private final @NonNull EventType eventType;
+    private final @CheckForNull String subject;
+    private final @CheckForNull String body;
+
+    /**
+     * @param subject Subject template, or blank to use the global one.
+     * @param body Body template, or blank to use the global one.
+     */
+    @DataBoundConstructor
+    public NotificationTemplate(final @NonNull EventType eventType, final String subject, final String body) {
+
+        this.eventType = eventType;
+        this.subject = Util.fixEmpty(subject);
+        this.body = Util.fixEmpty(body);
+    }
+
+    public @NonNull EventType getEventType() {
+
+        return eventType;
+    }
+
+    public @CheckForNull String getSubject() {
+
+        return subject;
+    }
+
+    public @CheckForNull String getBody() {
+
+        return body;
+    }
+
+    @Extension @Symbol("template")
+    public static class DescriptorImpl extends Descriptor<NotificationTemplate> {
+
+        public ListBoxModel doFillEventTypeItems() {
+
+            final ListBoxModel items = new ListBoxModel();
+            for (EventType type: EventType.values()) {
+
+                items.add(type.name());
+            }
+            return items;
+        }
+
+        @Override @NonNull
+        public String getDisplayName() {
+
+            return "Notification template";
+        }
+    }
+}
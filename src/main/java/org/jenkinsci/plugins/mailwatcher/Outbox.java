@@ -0,0 +1,729 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Durable queue of rendered mails that failed to be sent.
+ * <p>
+ * Mails are appended to a journal under {@code JENKINS_HOME} together with
+ * acknowledgements of the ones delivered since. Every record carries a CRC so
+ * a record torn by a crash is detected and the rest of the segment ignored.
+ * Once the active segment grows past its limit, a new one is started with the
+ * pending mails only and the old segments are removed. A background thread
+ * retries mails that are due oldest first. A mail the relay rejects for good
+ * is dropped so it neither holds back the rest nor reaches recipients twice.
+ * When the relay itself fails or refuses the mail for now, the mail backs off exponentially and the pass
+ * stops together with the rest being deferred. The pass also stops when the
+ * rate limit is exhausted. The number of attempts is kept in memory only so
+ * it starts over after restart.
+ */
+@Restricted(NoExternalUse.class)
+public final class Outbox {
+
+    private static final Logger LOGGER = Logger.getLogger(
+            Outbox.class.getName()
+    );
+
+    private static final String PREFIX = Outbox.class.getName();
+
+    /**
+     * Termination milestone attained once the journal is closed.
+     */
+    public static final String CLOSED = "mail-watcher-plugin.outbox.closed";
+
+    /*package*/ static final int MAX_PENDING = SystemProperties.getInteger(PREFIX + ".maxPending", 10000);
+    /*package*/ static final long MAX_SEGMENT_BYTES = 1024L * SystemProperties.getLong(PREFIX + ".maxSegmentKiB", 1024L);
+    /*package*/ static final long RETRY_BASE_MILLIS = TimeUnit.SECONDS.toMillis(SystemProperties.getLong(PREFIX + ".retrySeconds", 30L));
+    /*package*/ static final long RETRY_MAX_MILLIS = TimeUnit.SECONDS.toMillis(SystemProperties.getLong(PREFIX + ".maxRetrySeconds", 3600L));
+    /*package*/ static final int MAX_ATTEMPTS = SystemProperties.getInteger(PREFIX + ".maxAttempts", 30);
+
+    private static final String DIR = "mail-watcher-outbox";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final byte MAIL = 1;
+    private static final byte ACK = 2;
+    private static final int HEADER = 8;
+    private static final int MAX_RECORD = 16 * 1024 * 1024;
+
+    // guarded by Outbox.class
+    private static Outbox instance;
+
+    private final @NonNull File dir;
+    private final @NonNull Sender sender;
+    private final int maxPending;
+    private final long maxSegmentBytes;
+    private final long retryBaseMillis;
+    private final long retryMaxMillis;
+    private final int maxAttempts;
+
+    // Everything below is guarded by this
+    private final Map<Long, Mail> pending = new LinkedHashMap<>();
+    private long nextId = 1;
+    private long segment;
+    private FileOutputStream out;
+    private long segmentBytes;
+    private long liveBytes;
+    private boolean closed;
+
+    // Recreated lazily so the outbox survives Jenkins being restarted in the same JVM
+    private ScheduledThreadPoolExecutor executor;
+    private ScheduledFuture<?> scheduled;
+    private long scheduledAt;
+
+    /*package*/ Outbox(
+            final @NonNull File dir, final @NonNull Sender sender, final int maxPending,
+            final long maxSegmentBytes, final long retryBaseMillis, final long retryMaxMillis, final int maxAttempts
+    ) {
+
+        this.dir = dir;
+        this.sender = sender;
+        this.maxPending = Math.max(1, maxPending);
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.retryBaseMillis = Math.max(1, retryBaseMillis);
+        this.retryMaxMillis = Math.max(this.retryBaseMillis, retryMaxMillis);
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * Outbox of the running Jenkins instance.
+     *
+     * @return null if Jenkins is not running
+     */
+    /*package*/ static synchronized @CheckForNull Outbox get() {
+
+        final Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) return null;
+
+        final File dir = new File(jenkins.getRootDir(), DIR);
+        if (instance == null || !instance.dir.equals(dir)) {
+
+            if (instance != null) instance.close();
+
+            instance = new Outbox(
+                    dir, mail -> MailWatcherMailer.get().send(mail),
+                    MAX_PENDING, MAX_SEGMENT_BYTES, RETRY_BASE_MILLIS, RETRY_MAX_MILLIS, MAX_ATTEMPTS
+            );
+        }
+
+        return instance;
+    }
+
+    /**
+     * Persist mail to be retried later.
+     *
+     * @return false if the mail could not be queued
+     */
+    /*package*/ synchronized boolean enqueue(
+            final @NonNull String recipients, final @NonNull String subject, final @NonNull String body
+    ) {
+
+        try {
+
+            open();
+            if (pending.size() >= maxPending) {
+
+                LOGGER.log(Level.WARNING, "mail-watcher-plugin: outbox full, dropping: {0}", subject);
+                return false;
+            }
+
+            final long now = System.currentTimeMillis();
+            final Mail mail = new Mail(nextId++, now, recipients, subject, body);
+            mail.nextAttempt = now + retryBaseMillis;
+            append(mail.record());
+            add(mail);
+            compact();
+            if (closed) {
+
+                // Late mail after shutdown, left for the next start
+                closeJournal();
+            } else {
+
+                schedule(mail.nextAttempt);
+            }
+            return true;
+        } catch (IOException ex) {
+
+            LOGGER.log(Level.WARNING, "mail-watcher-plugin: unable to write outbox, dropping: " + subject, ex);
+            return false;
+        }
+    }
+
+    /*package*/ synchronized int pending() {
+
+        return pending.size();
+    }
+
+    /*package*/ synchronized @NonNull List<Mail> mails() {
+
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * Replay the journal and schedule delivery of mails left from previous run.
+     */
+    /*package*/ synchronized void start() {
+
+        closed = false;
+        try {
+
+            open();
+            if (!pending.isEmpty()) {
+
+                LOGGER.log(Level.INFO, "mail-watcher-plugin: {0} mails waiting in outbox", pending.size());
+                schedule(System.currentTimeMillis());
+            }
+        } catch (IOException ex) {
+
+            LOGGER.log(Level.WARNING, "mail-watcher-plugin: unable to read outbox", ex);
+        }
+    }
+
+    /**
+     * Send mails that are due oldest first, until the relay fails.
+     */
+    /*package*/ void retry() {
+
+        retry(System.currentTimeMillis());
+    }
+
+    /*package*/ void retry(final long now) {
+
+        final List<Mail> due = new ArrayList<>();
+        synchronized (this) {
+
+            scheduled = null;
+            for (Mail mail: pending.values()) {
+
+                if (mail.nextAttempt <= now) due.add(mail);
+            }
+        }
+
+        for (int i = 0; i < due.size(); i++) {
+
+            final Mail mail = due.get(i);
+            try {
+
+                sender.send(mail);
+                LOGGER.log(Level.INFO, "mail-watcher-plugin: notified from outbox: {0}", mail.subject);
+            } catch (RateLimiter.ExceededException ex) {
+
+                // Not a failure, wait for the tokens to be refilled
+                LOGGER.log(Level.FINE, "mail-watcher-plugin: rate limit exceeded, retrying later: {0}", mail.subject);
+                if (ex.isGlobal()) {
+
+                    defer(due.subList(i, due.size()), now + retryBaseMillis);
+                    break;
+                }
+
+                defer(due.subList(i, i + 1), now + retryBaseMillis);
+                continue;
+            } catch (SendFailedException ex) {
+
+                if (!SmtpTransportPool.rejected(ex)) {
+
+                    // Refused for now, like when the relay is busy, the rest would be refused the same way
+                    final long delay = failed(mail, now, ex);
+                    defer(due.subList(i + 1, due.size()), now + delay);
+                    break;
+                }
+
+                // Rejected for good, retrying would fail again or duplicate the mail for recipients it was sent to
+                LOGGER.log(Level.WARNING, "mail-watcher-plugin: rejected by relay, dropping from outbox: " + mail.subject, ex);
+            } catch (MessagingException | RuntimeException ex) {
+
+                // The relay failed rather than the mail, the rest would fail the same way
+                final long delay = failed(mail, now, ex);
+                defer(due.subList(i + 1, due.size()), now + delay);
+                break;
+            }
+
+            synchronized (this) {
+
+                acknowledge(mail);
+            }
+        }
+
+        synchronized (this) {
+
+            final long next = nextAttempt();
+            if (next != Long.MAX_VALUE) schedule(next);
+        }
+    }
+
+    /**
+     * Back off or give up on the mail.
+     *
+     * @return Milliseconds until the mail is retried.
+     */
+    private synchronized long failed(final @NonNull Mail mail, final long now, final @NonNull Exception ex) {
+
+        // Relay was not even contacted
+        if (!(ex instanceof CircuitBreaker.OpenException)) mail.attempts++;
+
+        if (mail.attempts >= maxAttempts) {
+
+            LOGGER.log(Level.WARNING, "mail-watcher-plugin: giving up on " + mail.subject + " after " + mail.attempts + " attempts", ex);
+            acknowledge(mail);
+            return retryBaseMillis;
+        }
+
+        mail.failures++;
+        final long delay = backoff(mail.failures);
+        mail.nextAttempt = now + delay;
+        LOGGER.log(Level.INFO, "mail-watcher-plugin: unable to notify " + mail.subject + " from outbox, retrying in " + delay + "ms", ex);
+        return delay;
+    }
+
+    private synchronized void defer(final @NonNull List<Mail> mails, final long until) {
+
+        for (Mail mail: mails) {
+
+            mail.nextAttempt = Math.max(mail.nextAttempt, until);
+        }
+    }
+
+    /**
+     * Time the earliest pending mail is due.
+     *
+     * @return {@link Long#MAX_VALUE} if there are no pending mails.
+     */
+    /*package*/ synchronized long nextAttempt() {
+
+        long next = Long.MAX_VALUE;
+        for (Mail mail: pending.values()) {
+
+            next = Math.min(next, mail.nextAttempt);
+        }
+        return next;
+    }
+
+    /*package*/ long backoff(final int failures) {
+
+        if (failures <= 1) return retryBaseMillis;
+
+        final int shift = Math.min(failures - 1, 30);
+        return Math.min(retryMaxMillis, retryBaseMillis << shift);
+    }
+
+    private void acknowledge(final @NonNull Mail mail) {
+
+        try {
+
+            open();
+            remove(mail.id);
+            append(ack(mail.id));
+            compact();
+        } catch (IOException ex) {
+
+            // Delivered again after restart, duplicate is better than a loss
+            remove(mail.id);
+            LOGGER.log(Level.WARNING, "mail-watcher-plugin: unable to acknowledge outbox entry", ex);
+        }
+    }
+
+    private void add(final @NonNull Mail mail) {
+
+        final Mail replaced = pending.put(mail.id, mail);
+        if (replaced != null) liveBytes -= replaced.size;
+        liveBytes += mail.size;
+    }
+
+    private void remove(final long id) {
+
+        final Mail removed = pending.remove(id);
+        if (removed != null) liveBytes -= removed.size;
+    }
+
+    /**
+     * Rewrite the journal once at least half of it are mails already delivered.
+     */
+    private void compact() throws IOException {
+
+        if (segmentBytes >= maxSegmentBytes && segmentBytes >= 2 * liveBytes) {
+
+            rotate();
+        }
+    }
+
+    private void schedule(final long due) {
+
+        if (closed) return;
+
+        if (scheduled != null) {
+
+            if (scheduledAt <= due) return;
+
+            // Mail due earlier than the next pass
+            scheduled.cancel(false);
+        }
+
+        if (executor == null) {
+
+            executor = new ScheduledThreadPoolExecutor(
+                    1, new NamingThreadFactory(new DaemonThreadFactory(), "mail-watcher-plugin outbox")
+            );
+        }
+
+        scheduledAt = due;
+        scheduled = executor.schedule(
+                () -> retry(), Math.max(0, due - System.currentTimeMillis()), TimeUnit.MILLISECONDS
+        );
+    }
+
+    private void open() throws IOException {
+
+        if (out != null) return;
+
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException(
+                "Unable to create " + dir
+        );
+
+        final List<File> segments = segments();
+        for (File file: segments) {
+
+            replay(file);
+        }
+
+        if (!segments.isEmpty()) {
+
+            segment = number(segments.get(segments.size() - 1));
+        }
+
+        // Start with a compacted segment so torn records and acknowledged mails are dropped
+        rotate();
+    }
+
+    private void rotate() throws IOException {
+
+        if (out != null) out.close();
+
+        segment++;
+        final File file = segment(segment);
+        out = new FileOutputStream(file);
+        segmentBytes = 0;
+
+        for (Mail mail: pending.values()) {
+
+            write(mail.record());
+        }
+        out.getChannel().force(false);
+
+        for (File old: segments()) {
+
+            if (number(old) < segment && !old.delete()) {
+
+                LOGGER.log(Level.WARNING, "mail-watcher-plugin: unable to delete {0}", old);
+            }
+        }
+    }
+
+    private void append(final @NonNull byte[] record) throws IOException {
+
+        write(record);
+        out.getChannel().force(false);
+    }
+
+    private void write(final @NonNull byte[] record) throws IOException {
+
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(HEADER + record.length);
+        final DataOutputStream data = new DataOutputStream(buffer);
+        data.writeInt(record.length);
+        data.writeInt((int) crc.getValue());
+        data.write(record);
+
+        buffer.writeTo(out);
+        segmentBytes += buffer.size();
+    }
+
+    private void replay(final @NonNull File file) throws IOException {
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+            while (true) {
+
+                final int length;
+                try {
+
+                    length = in.readInt();
+                } catch (EOFException ex) {
+
+                    return;
+                }
+
+                if (length <= 0 || length > MAX_RECORD) {
+
+                    LOGGER.log(Level.WARNING, "mail-watcher-plugin: corrupted outbox record in {0}", file);
+                    return;
+                }
+
+                final byte[] record = new byte[length];
+                final int checksum;
+                try {
+
+                    checksum = in.readInt();
+                    in.readFully(record);
+                } catch (EOFException ex) {
+
+                    LOGGER.log(Level.WARNING, "mail-watcher-plugin: incomplete outbox record in {0}", file);
+                    return;
+                }
+
+                final CRC32 crc = new CRC32();
+                crc.update(record);
+                if ((int) crc.getValue() != checksum) {
+
+                    LOGGER.log(Level.WARNING, "mail-watcher-plugin: corrupted outbox record in {0}", file);
+                    return;
+                }
+
+                apply(record);
+            }
+        }
+    }
+
+    private void apply(final @NonNull byte[] record) throws IOException {
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        final byte type = in.readByte();
+        final long id = in.readLong();
+        nextId = Math.max(nextId, id + 1);
+
+        if (type == MAIL) {
+
+            final long created = in.readLong();
+            final Mail mail = new Mail(id, created, readString(in), readString(in), readString(in));
+            mail.size = HEADER + record.length;
+            add(mail);
+        } else if (type == ACK) {
+
+            remove(id);
+        }
+    }
+
+    private @NonNull List<File> segments() {
+
+        final File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) return new ArrayList<>();
+
+        final List<File> segments = new ArrayList<>(Arrays.asList(files));
+        segments.removeIf(f -> number(f) < 0);
+        segments.sort((l, r) -> Long.compare(number(l), number(r)));
+        return segments;
+    }
+
+    private @NonNull File segment(final long number) {
+
+        return new File(dir, SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+    }
+
+    private static long number(final @NonNull File segment) {
+
+        final String name = segment.getName();
+        try {
+
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException ex) {
+
+            return -1;
+        }
+    }
+
+    private static @NonNull byte[] ack(final long id) throws IOException {
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(9);
+        final DataOutputStream data = new DataOutputStream(buffer);
+        data.writeByte(ACK);
+        data.writeLong(id);
+        return buffer.toByteArray();
+    }
+
+    private static void writeString(final @NonNull DataOutputStream out, final @NonNull String string) throws IOException {
+
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static @NonNull String readString(final @NonNull DataInputStream in) throws IOException {
+
+        final int length = in.readInt();
+        if (length < 0 || length > MAX_RECORD) throw new IOException("Invalid string length " + length);
+
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stop retrying and close the journal. Pending mails are sent after restart.
+     */
+    /*package*/ synchronized void close() {
+
+        closed = true;
+        if (executor != null) {
+
+            executor.shutdownNow();
+            executor = null;
+            scheduled = null;
+        }
+
+        closeJournal();
+    }
+
+    private void closeJournal() {
+
+        if (out != null) {
+
+            try {
+
+                out.close();
+            } catch (IOException ex) {
+
+                LOGGER.log(Level.FINE, "Unable to close outbox", ex);
+            }
+            out = null;
+            pending.clear();
+            liveBytes = 0;
+        }
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void recover() {
+
+        final Outbox outbox = get();
+        if (outbox != null) outbox.start();
+    }
+
+    @Terminator(requires = NotificationDispatcher.DRAINED, attains = CLOSED)
+    public static void shutdown() {
+
+        final Outbox outbox;
+        synchronized (Outbox.class) {
+
+            outbox = instance;
+        }
+
+        if (outbox != null) outbox.close();
+    }
+
+    /**
+     * Deliver mail from the outbox.
+     */
+    /*package*/ interface Sender {
+
+        void send(@NonNull Mail mail) throws MessagingException;
+    }
+
+    /**
+     * Rendered mail waiting in outbox.
+     */
+    /*package*/ static final class Mail {
+
+        /*package*/ final long id;
+        /*package*/ final long created;
+        /*package*/ final @NonNull String recipients;
+        /*package*/ final @NonNull String subject;
+        /*package*/ final @NonNull String body;
+
+        // guarded by the outbox
+        private int attempts;
+        private int failures;
+        private long nextAttempt;
+        private int size;
+
+        private Mail(
+                final long id, final long created,
+                final @NonNull String recipients, final @NonNull String subject, final @NonNull String body
+        ) {
+
+            this.id = id;
+            this.created = created;
+            this.recipients = recipients;
+            this.subject = subject;
+            this.body = body;
+        }
+
+        private @NonNull byte[] record() throws IOException {
+
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+                    64 + recipients.length() + subject.length() + body.length()
+            );
+            final DataOutputStream data = new DataOutputStream(buffer);
+            data.writeByte(MAIL);
+            data.writeLong(id);
+            data.writeLong(created);
+            writeString(data, recipients);
+            writeString(data, subject);
+            writeString(data, body);
+
+            size = HEADER + buffer.size();
+            return buffer.toByteArray();
+        }
+    }
+}
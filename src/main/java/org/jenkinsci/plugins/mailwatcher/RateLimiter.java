@@ -0,0 +1,423 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Limit the rate of outgoing mail, globally and per recipient.
+ * <p>
+ * Both limits are token buckets refilled continuously at the configured rate
+ * per minute and holding at most a minute worth of tokens. Recipients over
+ * their limit are removed from the message. When the global limit is exceeded
+ * the message is not sent at all. Subjects of notifications held back are
+ * collected per recipient and reported in a summary once a minute. Summaries themselves are
+ * not held back but they consume the tokens. Mails retried from outbox wait
+ * until there are tokens for all their recipients.
+ */
+@Restricted(NoExternalUse.class)
+public final class RateLimiter {
+
+    private static final Logger LOGGER = Logger.getLogger(
+            RateLimiter.class.getName()
+    );
+
+    /*package*/ static final long SUMMARY_MILLIS = 60_000;
+    /*package*/ static final int MAX_HELD = 100;
+    /*package*/ static final int MAX_RECIPIENTS = 10_000;
+
+    private static final RateLimiter INSTANCE = new RateLimiter(
+            () -> MailWatcherConfiguration.get().getMailsPerMinute(),
+            () -> MailWatcherConfiguration.get().getMailsPerRecipientPerMinute()
+    );
+
+    private final @NonNull IntSupplier globalRate;
+    private final @NonNull IntSupplier recipientRate;
+
+    // guarded by this
+    private final Bucket global = new Bucket(0);
+    private final Map<String, Bucket> recipients = new HashMap<>();
+
+    private final @NonNull WindowedBuffer<String, Held> held;
+
+    /*package*/ RateLimiter(final @NonNull IntSupplier globalRate, final @NonNull IntSupplier recipientRate) {
+
+        this.globalRate = globalRate;
+        this.recipientRate = recipientRate;
+        this.held = new WindowedBuffer<>(
+                "rate-limit", () -> SUMMARY_MILLIS, false, MAX_HELD, MAX_RECIPIENTS, this::summarize
+        );
+    }
+
+    /*package*/ static @NonNull RateLimiter get() {
+
+        return INSTANCE;
+    }
+
+    /**
+     * Take tokens for the notification.
+     *
+     * @return Recipients the notification can be sent to now.
+     */
+    /*package*/ @NonNull InternetAddress[] permit(
+            final @NonNull MailWatcherNotification notification, final @NonNull InternetAddress[] addresses
+    ) {
+
+        return permit(notification, addresses, System.currentTimeMillis());
+    }
+
+    /*package*/ @NonNull InternetAddress[] permit(
+            final @NonNull MailWatcherNotification notification, final @NonNull InternetAddress[] addresses, final long now
+    ) {
+
+        final int globalRate = this.globalRate.getAsInt();
+        final int recipientRate = this.recipientRate.getAsInt();
+
+        final List<InternetAddress> permitted = new ArrayList<>(addresses.length);
+        final List<String> heldBack = new ArrayList<>();
+        synchronized (this) {
+
+            if (!global.acquire(globalRate, now)) {
+
+                for (final InternetAddress address: addresses) {
+
+                    heldBack.add(key(address));
+                }
+            } else if (!limited(recipientRate)) {
+
+                permitted.addAll(Arrays.asList(addresses));
+            } else {
+
+                prune(recipientRate, now);
+                for (final InternetAddress address: addresses) {
+
+                    final String key = key(address);
+                    if (recipients.computeIfAbsent(key, k -> new Bucket(now)).acquire(recipientRate, now)) {
+
+                        permitted.add(address);
+                    } else {
+
+                        heldBack.add(key);
+                    }
+                }
+
+                // Nothing is going to be sent
+                if (permitted.isEmpty()) global.refund(globalRate);
+            }
+        }
+
+        if (!heldBack.isEmpty()) {
+
+            NotificationMetrics.get().record(notification.getType(), NotificationMetrics.Outcome.HELD_BACK);
+        }
+
+        final Held summarized = heldBack.isEmpty() ? null : new Held(notification);
+        for (final String recipient: heldBack) {
+
+            if (!held.add(recipient, summarized)) {
+
+                LOGGER.log(Level.WARNING, "mail-watcher-plugin: rate limit exceeded, dropping for {0}: {1}", new Object[] {
+                        recipient, notification.getMailSubject()
+                });
+            }
+        }
+
+        return permitted.toArray(new InternetAddress[0]);
+    }
+
+    /**
+     * Take tokens for mail that is not to be held back.
+     */
+    /*package*/ synchronized void consume(final @NonNull InternetAddress[] addresses) {
+
+        final long now = System.currentTimeMillis();
+        final int recipientRate = this.recipientRate.getAsInt();
+
+        global.consume(globalRate.getAsInt(), now);
+        if (!limited(recipientRate)) return;
+
+        for (final InternetAddress address: addresses) {
+
+            recipients.computeIfAbsent(key(address), k -> new Bucket(now)).consume(recipientRate, now);
+        }
+    }
+
+    /**
+     * Take tokens for mail that can wait, either for all the recipients or none.
+     *
+     * @throws ExceededException if the mail is not to be sent now.
+     */
+    /*package*/ void acquire(final @NonNull InternetAddress[] addresses) throws ExceededException {
+
+        acquire(addresses, System.currentTimeMillis());
+    }
+
+    /*package*/ synchronized void acquire(
+            final @NonNull InternetAddress[] addresses, final long now
+    ) throws ExceededException {
+
+        final int globalRate = this.globalRate.getAsInt();
+        final int recipientRate = this.recipientRate.getAsInt();
+
+        if (!global.acquire(globalRate, now)) throw new ExceededException(true);
+        if (!limited(recipientRate)) return;
+
+        prune(recipientRate, now);
+        final List<Bucket> taken = new ArrayList<>(addresses.length);
+        for (final InternetAddress address: addresses) {
+
+            final Bucket bucket = recipients.computeIfAbsent(key(address), k -> new Bucket(now));
+            if (!bucket.acquire(recipientRate, now)) {
+
+                global.refund(globalRate);
+                for (final Bucket refunded: taken) {
+
+                    refunded.refund(recipientRate);
+                }
+                throw new ExceededException(false);
+            }
+            taken.add(bucket);
+        }
+    }
+
+    /*package*/ @NonNull WindowedBuffer<String, Held> held() {
+
+        return held;
+    }
+
+    /*package*/ synchronized int tracked() {
+
+        return recipients.size();
+    }
+
+    // No buckets are kept for recipients while their limit is disabled
+    private boolean limited(final int recipientRate) {
+
+        if (recipientRate > 0) return true;
+
+        recipients.clear();
+        return false;
+    }
+
+    // Forget recipients that have their buckets refilled
+    private void prune(final int recipientRate, final long now) {
+
+        if (recipients.size() < MAX_RECIPIENTS) return;
+
+        recipients.values().removeIf(bucket -> bucket.full(recipientRate, now));
+    }
+
+    private static @NonNull String key(final @NonNull InternetAddress address) {
+
+        return address.getAddress().toLowerCase(Locale.ENGLISH);
+    }
+
+    private void summarize(final @NonNull String recipient, final @NonNull WindowedBuffer.Batch<Held> batch) {
+
+        final Held first = batch.first();
+        new Summary.Builder(first.mailer, first.jenkinsRootUrl)
+                .entries(batch.events(), batch.dropped())
+                .recipients(recipient)
+                .send(null)
+        ;
+    }
+
+    /**
+     * Notification held back, reduced to what the summary lists.
+     */
+    /*package*/ static final class Held {
+
+        private final @NonNull MailWatcherMailer mailer;
+        private final String jenkinsRootUrl;
+        private final String subject;
+
+        private Held(final @NonNull MailWatcherNotification notification) {
+
+            this.mailer = notification.mailer;
+            this.jenkinsRootUrl = notification.jenkinsRootUrl();
+            this.subject = notification.getSubject();
+        }
+    }
+
+    /**
+     * Tokens replenished at a rate per minute, holding a minute worth of tokens at most.
+     */
+    private static final class Bucket {
+
+        private double tokens = Double.NaN;
+        private long refilled;
+
+        private Bucket(final long now) {
+
+            this.refilled = now;
+        }
+
+        private boolean acquire(final int rate, final long now) {
+
+            if (rate <= 0) return true;
+
+            refill(rate, now);
+            if (tokens < 1) return false;
+
+            tokens--;
+            return true;
+        }
+
+        private void consume(final int rate, final long now) {
+
+            if (rate <= 0) return;
+
+            refill(rate, now);
+            // Possibly going to debt
+            tokens--;
+        }
+
+        private void refund(final int rate) {
+
+            if (rate <= 0) return;
+
+            tokens = Math.min(rate, tokens + 1);
+        }
+
+        private boolean full(final int rate, final long now) {
+
+            if (rate <= 0) return true;
+
+            refill(rate, now);
+            return tokens >= rate;
+        }
+
+        private void refill(final int rate, final long now) {
+
+            if (Double.isNaN(tokens)) {
+
+                tokens = rate;
+            } else if (now > refilled) {
+
+                tokens = Math.min(rate, tokens + (now - refilled) * rate / 60_000D);
+            }
+            refilled = Math.max(refilled, now);
+        }
+    }
+
+    private static final class Summary extends MailWatcherNotification {
+
+        public Summary(final Builder builder) {
+
+            super(builder);
+        }
+
+        @Override
+        protected @NonNull Map<String, String> pairs() {
+
+            final Map<String, String> pairs = new LinkedHashMap<>(1);
+            pairs.put("Url", jenkinsRootUrl());
+            return pairs;
+        }
+
+        @Override
+        protected boolean rateLimited() {
+
+            return false;
+        }
+
+        private static final class Builder extends MailWatcherNotification.Builder {
+
+            public Builder(final MailWatcherMailer mailer, final String jenkinsRootUrl) {
+
+                super(mailer, jenkinsRootUrl);
+                type(EventType.RATE_LIMIT_SUMMARY);
+            }
+
+            public Builder entries(final List<Held> entries, final int dropped) {
+
+                final int total = entries.size() + dropped;
+                subject(total == 1 ? "1 notification held back" : total + " notifications held back");
+
+                final StringBuilder body = new StringBuilder(
+                        "Mail rate limit was exceeded, following notifications were not sent:" + NEWLINE + NEWLINE
+                );
+                for (final Held entry: entries) {
+
+                    body.append(entry.subject).append(NEWLINE);
+                }
+
+                if (dropped > 0) {
+
+                    body.append("... and ").append(dropped).append(" more").append(NEWLINE);
+                }
+
+                body(body.toString());
+                return this;
+            }
+
+            @Override
+            public void send(final Object o) {
+
+                new Summary(this).send();
+            }
+        }
+    }
+
+    /**
+     * Mail over the rate limit.
+     */
+    public static final class ExceededException extends MessagingException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final boolean global;
+
+        /*package*/ ExceededException(final boolean global) {
+
+            super(global ? "Mail rate limit exceeded" : "Mail rate limit exceeded for some of the recipients");
+            this.global = global;
+        }
+
+        /**
+         * No mail is to be sent now, not only to these recipients.
+         */
+        public boolean isGlobal() {
+
+            return global;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+
+/**
+ * Immutable list of notification recipients.
+ * <p>
+ * Instances are shared between all properties configured with the same
+ * address list and the list is parsed at most once, when first needed.
+ */
+/*package*/ final class Recipients {
+
+    // Canonical instances, collected once no property refers to them; guarded by itself
+    private static final Map<String, WeakReference<Recipients>> CANONICAL = new WeakHashMap<>();
+
+    private final @NonNull String addresses;
+    private volatile InternetAddress[] parsed;
+
+    private Recipients(final @NonNull String addresses) {
+
+        this.addresses = addresses;
+    }
+
+    /**
+     * Get shared instance for the address list.
+     *
+     * @return null for null or blank input
+     */
+    /*package*/ static @CheckForNull Recipients of(final @CheckForNull String addresses) {
+
+        if (addresses == null || addresses.isBlank()) return null;
+
+        synchronized (CANONICAL) {
+
+            final WeakReference<Recipients> ref = CANONICAL.get(addresses);
+            Recipients recipients = ref == null ? null : ref.get();
+            if (recipients == null) {
+
+                recipients = new Recipients(addresses);
+                CANONICAL.put(recipients.addresses, new WeakReference<>(recipients));
+            }
+
+            return recipients;
+        }
+    }
+
+    /**
+     * Get shared instance for the addresses of both lists.
+     */
+    /*package*/ static @CheckForNull Recipients union(
+            final @CheckForNull Recipients first, final @CheckForNull Recipients second
+    ) {
+
+        if (first == null) return second;
+        if (second == null || first == second) return first;
+
+        return of(first.addresses + ", " + second.addresses);
+    }
+
+    /**
+     * Parsed addresses.
+     *
+     * @throws AddressException when the list can not be parsed
+     */
+    /*package*/ @NonNull InternetAddress[] addresses() throws AddressException {
+
+        InternetAddress[] addresses = parsed;
+        if (addresses == null) {
+
+            addresses = InternetAddress.parse(this.addresses);
+            parsed = addresses;
+        }
+
+        return addresses.clone();
+    }
+
+    @Override
+    public String toString() {
+
+        return addresses;
+    }
+}
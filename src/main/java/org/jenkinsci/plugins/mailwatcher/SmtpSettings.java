@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.tasks.Mailer;
+import hudson.util.Secret;
+
+import java.util.Objects;
+
+/**
+ * SMTP settings of the Mailer global configuration identifying compatible
+ * mail sessions and transport connections.
+ */
+/*package*/ final class SmtpSettings {
+
+    private final @CheckForNull String host;
+    private final @CheckForNull String port;
+    private final boolean ssl;
+    private final boolean tls;
+    private final @CheckForNull String user;
+    private final @CheckForNull Secret password;
+
+    /*package*/ SmtpSettings(
+            final String host, final String port, final boolean ssl,
+            final boolean tls, final String user, final Secret password
+    ) {
+
+        this.host = host;
+        this.port = port;
+        this.ssl = ssl;
+        this.tls = tls;
+        this.user = user;
+        this.password = password;
+    }
+
+    /*package*/ static @NonNull SmtpSettings of(final @NonNull Mailer.DescriptorImpl descriptor) {
+
+        return new SmtpSettings(
+                descriptor.getSmtpHost(),
+                descriptor.getSmtpPort(),
+                descriptor.getUseSsl(),
+                descriptor.getUseTls(),
+                descriptor.getSmtpAuthUserName(),
+                descriptor.getSmtpAuthPasswordSecret()
+        );
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+
+        if (this == o) return true;
+        if (!(o instanceof SmtpSettings)) return false;
+
+        final SmtpSettings other = (SmtpSettings) o;
+        return ssl == other.ssl
+                && tls == other.tls
+                && Objects.equals(host, other.host)
+                && Objects.equals(port, other.port)
+                && Objects.equals(user, other.user)
+                && Objects.equals(password, other.password)
+        ;
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Objects.hash(host, port, ssl, tls, user);
+    }
+
+    @Override
+    public String toString() {
+
+        return (user == null ? "" : user + "@") + host + ":" + port;
+    }
+}
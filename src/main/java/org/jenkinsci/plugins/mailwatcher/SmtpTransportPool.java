@@ -0,0 +1,334 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.init.Terminator;
+import hudson.model.PeriodicWork;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+
+import jenkins.util.SystemProperties;
+
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Long-lived SMTP connections reused across messages.
+ * <p>
+ * Connections are pooled per {@link SmtpSettings} so a configuration change
+ * never reuses a connection to the old relay. Connections idle for a while
+ * are probed with NOOP before reuse, recycled after a number of messages and
+ * closed when idle for too long. A pooled connection that fails is replaced
+ * by a fresh one and the message is retried once.
+ */
+@Restricted(NoExternalUse.class)
+public final class SmtpTransportPool {
+
+    private static final Logger LOGGER = Logger.getLogger(
+            SmtpTransportPool.class.getName()
+    );
+
+    private static final String PREFIX = SmtpTransportPool.class.getName();
+
+    /*package*/ static final int MAX_IDLE = SystemProperties.getInteger(PREFIX + ".maxIdle", 2);
+    /*package*/ static final long IDLE_MILLIS = TimeUnit.SECONDS.toMillis(SystemProperties.getLong(PREFIX + ".idleSeconds", 60L));
+    /*package*/ static final long VALIDATE_MILLIS = TimeUnit.SECONDS.toMillis(SystemProperties.getLong(PREFIX + ".validateAfterSeconds", 5L));
+    /*package*/ static final int MAX_MESSAGES = SystemProperties.getInteger(PREFIX + ".maxMessagesPerConnection", 100);
+
+    private static final SmtpTransportPool INSTANCE = new SmtpTransportPool(
+            MAX_IDLE, IDLE_MILLIS, VALIDATE_MILLIS, MAX_MESSAGES
+    );
+
+    private final int maxIdle;
+    private final long idleMillis;
+    private final long validateMillis;
+    private final int maxMessages;
+
+    // Most recently used connection first; guarded by this
+    private final Map<SmtpSettings, Deque<Connection>> idle = new HashMap<>();
+
+    /*package*/ SmtpTransportPool(
+            final int maxIdle, final long idleMillis, final long validateMillis, final int maxMessages
+    ) {
+
+        this.maxIdle = maxIdle;
+        this.idleMillis = idleMillis;
+        this.validateMillis = validateMillis;
+        this.maxMessages = Math.max(1, maxMessages);
+    }
+
+    /*package*/ static @NonNull SmtpTransportPool get() {
+
+        return INSTANCE;
+    }
+
+    /**
+     * Send message through a pooled connection.
+     */
+    /*package*/ void send(
+            final @NonNull SmtpSettings settings, final @NonNull MimeMessage msg
+    ) throws MessagingException {
+
+        msg.saveChanges();
+        final Address[] recipients = msg.getAllRecipients();
+        if (recipients == null || recipients.length == 0) throw new SendFailedException(
+                "No recipient addresses"
+        );
+
+        Connection connection = borrow(settings);
+        while (true) {
+
+            final boolean reused = connection != null;
+            if (connection == null) {
+
+                connection = open(msg.getSession(), recipients[0]);
+            }
+
+            try {
+
+                connection.transport.sendMessage(msg, recipients);
+                connection.sent++;
+                release(settings, connection);
+                return;
+            } catch (SendFailedException ex) {
+
+                if (unavailable(ex)) {
+
+                    // Relay closing the channel or out of resources, the connection is not to be reused
+                    close(connection);
+                } else {
+
+                    // Rejected by the relay, the connection itself is fine
+                    release(settings, connection);
+                }
+                throw ex;
+            } catch (MessagingException ex) {
+
+                close(connection);
+                if (!reused) throw ex;
+
+                LOGGER.log(Level.FINE, "Pooled connection to " + settings + " failed, reconnecting", ex);
+                connection = null;
+            }
+        }
+    }
+
+    private @CheckForNull Connection borrow(final @NonNull SmtpSettings settings) {
+
+        while (true) {
+
+            final Connection candidate;
+            synchronized (this) {
+
+                final Deque<Connection> connections = idle.get(settings);
+                candidate = connections == null ? null : connections.pollFirst();
+            }
+
+            if (candidate == null) return null;
+
+            final long idleFor = System.currentTimeMillis() - candidate.lastUsed;
+            if (idleFor >= idleMillis) {
+
+                close(candidate);
+                continue;
+            }
+
+            // SMTP transport checks the connection using NOOP
+            if (idleFor >= validateMillis && !candidate.transport.isConnected()) {
+
+                close(candidate);
+                continue;
+            }
+
+            return candidate;
+        }
+    }
+
+    private @NonNull Connection open(
+            final Session session, final Address recipient
+    ) throws MessagingException {
+
+        final Transport transport = session.getTransport(recipient);
+        transport.connect();
+        return new Connection(transport);
+    }
+
+    private void release(final @NonNull SmtpSettings settings, final @NonNull Connection connection) {
+
+        connection.lastUsed = System.currentTimeMillis();
+        if (connection.sent >= maxMessages) {
+
+            close(connection);
+            return;
+        }
+
+        synchronized (this) {
+
+            final Deque<Connection> connections = idle.computeIfAbsent(settings, k -> new ArrayDeque<>());
+            if (connections.size() < maxIdle) {
+
+                connections.addFirst(connection);
+                return;
+            }
+        }
+
+        close(connection);
+    }
+
+    /**
+     * Close connections idle for too long.
+     */
+    /*package*/ void evictIdle() {
+
+        final long deadline = System.currentTimeMillis() - idleMillis;
+        final List<Connection> expired = new ArrayList<>();
+        synchronized (this) {
+
+            for (Iterator<Deque<Connection>> it = idle.values().iterator(); it.hasNext();) {
+
+                final Deque<Connection> connections = it.next();
+                connections.removeIf(c -> {
+                    if (c.lastUsed > deadline) return false;
+                    expired.add(c);
+                    return true;
+                });
+
+                if (connections.isEmpty()) it.remove();
+            }
+        }
+
+        expired.forEach(SmtpTransportPool::close);
+    }
+
+    /*package*/ void closeAll() {
+
+        final List<Connection> all = new ArrayList<>();
+        synchronized (this) {
+
+            idle.values().forEach(all::addAll);
+            idle.clear();
+        }
+
+        all.forEach(SmtpTransportPool::close);
+    }
+
+    /*package*/ synchronized int idleConnections() {
+
+        int count = 0;
+        for (Deque<Connection> connections: idle.values()) {
+
+            count += connections.size();
+        }
+
+        return count;
+    }
+
+    /**
+     * Relay refused the mail for now, like when it is shutting down, throttling or out of resources.
+     */
+    /*package*/ static boolean unavailable(final @NonNull SendFailedException ex) {
+
+        return ex instanceof SMTPSendFailedException && ((SMTPSendFailedException) ex).getReturnCode() / 100 == 4;
+    }
+
+    /**
+     * Relay rejected the mail for good so sending it again would fail the same way.
+     * <p>
+     * Either the relay replied with a permanent error, or every recipient was refused and none is left to retry.
+     * Transient replies, like when the relay is busy or greylisting, are to be retried.
+     */
+    /*package*/ static boolean rejected(final @NonNull SendFailedException ex) {
+
+        if (ex instanceof SMTPSendFailedException && ((SMTPSendFailedException) ex).getReturnCode() / 100 == 5) return true;
+
+        final Address[] invalid = ex.getInvalidAddresses();
+        final Address[] unsent = ex.getValidUnsentAddresses();
+        return invalid != null && invalid.length > 0 && (unsent == null || unsent.length == 0);
+    }
+
+    private static void close(final @NonNull Connection connection) {
+
+        try {
+
+            connection.transport.close();
+        } catch (MessagingException ex) {
+
+            LOGGER.log(Level.FINE, "Unable to close SMTP connection", ex);
+        }
+    }
+
+    @Terminator(requires = Outbox.CLOSED)
+    public static void shutdown() {
+
+        INSTANCE.closeAll();
+    }
+
+    private static final class Connection {
+
+        private final @NonNull Transport transport;
+        private long lastUsed = System.currentTimeMillis();
+        private int sent;
+
+        private Connection(final @NonNull Transport transport) {
+
+            this.transport = transport;
+        }
+    }
+
+    @Extension
+    public static final class IdleConnectionReaper extends PeriodicWork {
+
+        @Override
+        public long getRecurrencePeriod() {
+
+            return Math.max(IDLE_MILLIS / 2, TimeUnit.SECONDS.toMillis(5));
+        }
+
+        @Override
+        protected void doRun() {
+
+            INSTANCE.evictIdle();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text with {@code ${variable}} placeholders, parsed once and rendered many times.
+ * <p>
+ * Placeholders of unknown variables are rendered as they are so mistakes are
+ * visible in the resulting mail. An unterminated {@code ${} is plain text.
+ */
+/*package*/ final class Template {
+
+    /**
+     * Values of template variables.
+     */
+    /*package*/ interface Variables {
+
+        /**
+         * Append value of the variable.
+         *
+         * @return false if there is no such variable
+         */
+        boolean append(@NonNull String name, @NonNull StringBuilder out);
+    }
+
+    private final @NonNull String source;
+    // Literal text on even positions, variable names on odd ones
+    private final @NonNull String[] segments;
+
+    private Template(final @NonNull String source, final @NonNull String[] segments) {
+
+        this.source = source;
+        this.segments = segments;
+    }
+
+    /*package*/ static @NonNull Template compile(final @NonNull String source) {
+
+        final List<String> segments = new ArrayList<>();
+        final StringBuilder literal = new StringBuilder();
+        int pos = 0;
+        while (pos < source.length()) {
+
+            final int start = source.indexOf("${", pos);
+            final int end = start < 0 ? -1 : source.indexOf('}', start + 2);
+            if (end < 0) {
+
+                literal.append(source, pos, source.length());
+                break;
+            }
+
+            literal.append(source, pos, start);
+            segments.add(literal.toString());
+            segments.add(source.substring(start + 2, end).trim());
+            literal.setLength(0);
+            pos = end + 1;
+        }
+        segments.add(literal.toString());
+
+        return new Template(source, segments.toArray(new String[0]));
+    }
+
+    /*package*/ void render(final @NonNull StringBuilder out, final @NonNull Variables variables) {
+
+        for (int i = 0; i < segments.length; i++) {
+
+            final String segment = segments[i];
+            if (i % 2 == 0) {
+
+                out.append(segment);
+            } else if (!variables.append(segment, out)) {
+
+                out.append("${").append(segment).append('}');
+            }
+        }
+    }
+
+    /*package*/ @NonNull String getSource() {
+
+        return source;
+    }
+
+    @Override
+    public String toString() {
+
+        return source;
+    }
+}
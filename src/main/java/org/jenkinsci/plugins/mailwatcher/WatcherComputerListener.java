@@ -23,9 +23,14 @@
  */
 package org.jenkinsci.plugins.mailwatcher;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.model.PeriodicWork;
 import hudson.model.TaskListener;
 import hudson.model.Computer;
 import hudson.model.Node;
@@ -34,13 +39,29 @@ import hudson.slaves.NodeProperty;
 import hudson.slaves.NodePropertyDescriptor;
 import hudson.slaves.OfflineCause;
 import hudson.util.DescribableList;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.mail.internet.InternetAddress;
 import jenkins.model.Jenkins;
+import jenkins.util.Timer;
 
 /**
  * Notify whenever Computer marked online/offline.
  * <p>
  * Sends email do the list of recipients on following events: onOffline,
  * onOnline, onTemporarilyOffline and onTemporarilyOnline.
+ * <p>
+ * Computers disconnected by controller shutdown are not reported. Computers reconnecting after
+ * startup are reported in one summary per recipient once all of them are back or the grace period is over.
  *
  * @author ogondza
  */
@@ -49,14 +70,27 @@ public class WatcherComputerListener extends ComputerListener {
 
     private final MailWatcherMailer mailer;
     private final String jenkinsRootUrl;
+    private final FlapDetector flaps = new FlapDetector(
+            () -> MailWatcherConfiguration.get().getFlapTransitions(),
+            () -> MailWatcherConfiguration.get().flapMillis()
+    );
+
+    // Startup grace period, guarded by this
+    private boolean grace;
+    // Names of watched computers, null until Jenkins is started
+    private Set<String> expected;
+    private final Set<String> reconnected = new HashSet<>();
+    private volatile boolean shuttingDown;
 
-    @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
     public WatcherComputerListener() {
 
-        this(
-                new MailWatcherMailer(Jenkins.get()),
-                Jenkins.get().getRootUrl()
-        );
+        this(MailWatcherMailer.get(), null);
+
+        final boolean starting = Jenkins.get().getInitLevel().compareTo(InitMilestone.COMPLETED) < 0;
+        if (starting && MailWatcherConfiguration.get().getGraceSeconds() > 0) {
+
+            beginGrace();
+        }
     }
 
     public WatcherComputerListener(
@@ -75,7 +109,9 @@ public class WatcherComputerListener extends ComputerListener {
     @Override
     public void onOffline(final Computer c) {
 
-        getNotification().online(false)
+        if (!isWatched(c) || buffered(c, false) || !reportTransition(c, false) || !isWatched(c, false)) return;
+
+        getNotification(EventType.COMPUTER_OFFLINE).online(false)
                 .subject("marked offline")
                 .send(c)
         ;
@@ -89,7 +125,9 @@ public class WatcherComputerListener extends ComputerListener {
             return;
         }
 
-        getNotification().online(false)
+        if (!isWatched(c) || buffered(c, false) || !reportTransition(c, false) || !isWatched(c, false)) return;
+
+        getNotification(EventType.COMPUTER_OFFLINE).online(false)
                 .subject("marked offline")
                 .body(cause.toString())
                 .send(c)
@@ -99,7 +137,9 @@ public class WatcherComputerListener extends ComputerListener {
     @Override
     public void onOnline(final Computer c, final TaskListener listener) {
 
-        getNotification().online(true)
+        if (!isWatched(c) || buffered(c, true) || !reportTransition(c, true) || !isWatched(c, true)) return;
+
+        getNotification(EventType.COMPUTER_ONLINE).online(true)
                 .subject("marked online")
                 .send(c)
         ;
@@ -107,11 +147,14 @@ public class WatcherComputerListener extends ComputerListener {
 
     @Override
     public void onTemporarilyOffline(final Computer c, final OfflineCause cause) {
+
+        if (!isWatched(c, false)) return;
+
         String causeString = "";
         if (cause!=null) {
             causeString = cause.toString();
         }
-        getNotification().online(false)
+        getNotification(EventType.COMPUTER_TEMPORARILY_OFFLINE).online(false)
                 .subject("marked temporarily offline")
                 .body(causeString)
                 .send(c)
@@ -121,15 +164,287 @@ public class WatcherComputerListener extends ComputerListener {
     @Override
     public void onTemporarilyOnline(final Computer c) {
 
-        getNotification().online(true)
+        if (!isWatched(c, true)) return;
+
+        getNotification(EventType.COMPUTER_TEMPORARILY_ONLINE).online(true)
                 .subject("marked online (was temporarily offline)")
                 .send(c)
         ;
     }
 
-    private Notification.Builder getNotification() {
+    /**
+     * Hold back online/offline transition caused by controller restart.
+     *
+     * @return true if the transition should not be reported on its own.
+     */
+    private boolean buffered(final @NonNull Computer c, final boolean online) {
+
+        if (shuttingDown) return true; // Disconnected by the shutdown itself
+
+        synchronized (this) {
+
+            if (!grace) return false;
+            // Not known before the restart
+            if (expected != null && !expected.contains(c.getName())) return false;
+
+            if (online) {
 
-        return new Notification.Builder(mailer, jenkinsRootUrl);
+                reconnected.add(c.getName());
+            } else {
+
+                reconnected.remove(c.getName());
+            }
+        }
+
+        if (online) endGraceIfReconnected();
+        return true;
+    }
+
+    /*package*/ synchronized void beginGrace() {
+
+        grace = true;
+        expected = null;
+        reconnected.clear();
+    }
+
+    /**
+     * Jenkins is started, wait for watched computers to reconnect.
+     */
+    /*package*/ void awaitReconnect(final @NonNull Computer... computers) {
+
+        final Set<String> watched = new LinkedHashSet<>();
+        final Set<String> online = new HashSet<>();
+        for (Computer c: computers) {
+
+            if (isWatched(c)) {
+
+                watched.add(c.getName());
+                if (c.isOnline()) {
+
+                    online.add(c.getName());
+                }
+            }
+        }
+
+        synchronized (this) {
+
+            if (!grace) return;
+
+            expected = watched;
+            reconnected.addAll(online);
+        }
+
+        Timer.get().schedule(this::endGrace, MailWatcherConfiguration.get().getGraceSeconds(), TimeUnit.SECONDS);
+        endGraceIfReconnected();
+    }
+
+    private void endGraceIfReconnected() {
+
+        final boolean all;
+        synchronized (this) {
+
+            all = expected != null && reconnected.containsAll(expected);
+        }
+
+        if (all) endGrace();
+    }
+
+    /**
+     * Report computers that have and have not reconnected, one notification per recipient.
+     */
+    /*package*/ void endGrace() {
+
+        final List<String> back = new ArrayList<>();
+        final List<String> missing = new ArrayList<>();
+        synchronized (this) {
+
+            if (!grace || expected == null) return;
+
+            for (String name: expected) {
+
+                (reconnected.contains(name) ? back : missing).add(name);
+            }
+
+            grace = false;
+            expected = null;
+            reconnected.clear();
+        }
+
+        final Map<String, Reconnected.Builder> recipients = new LinkedHashMap<>();
+        summarize(recipients, back, true);
+        summarize(recipients, missing, false);
+
+        for (Reconnected.Builder summary: recipients.values()) {
+
+            summary.send(null);
+        }
+    }
+
+    private void summarize(
+            final @NonNull Map<String, Reconnected.Builder> recipients,
+            final @NonNull List<String> computers,
+            final boolean online
+    ) {
+
+        for (String name: computers) {
+
+            final Computer c = computer(name);
+            if (c == null) continue; // Removed in the meantime
+
+            final WatcherNodeProperty property = getWatcherNodeProperty(c);
+            final Recipients addresses = property == null
+                    ? null
+                    : online ? property.getOnlineRecipients() : property.getOfflineRecipients()
+            ;
+            if (addresses == null) continue;
+
+            final InternetAddress[] parsed = MailWatcherNotification.addresses(addresses);
+            if (parsed == null) {
+
+                getNotification(online ? EventType.COMPUTER_ONLINE : EventType.COMPUTER_OFFLINE).online(online)
+                        .subject(online ? "marked online" : "marked offline")
+                        .send(c)
+                ;
+                continue;
+            }
+
+            for (InternetAddress address: parsed) {
+
+                recipients.computeIfAbsent(
+                        address.getAddress().toLowerCase(Locale.ENGLISH),
+                        k -> new Reconnected.Builder(mailer, jenkinsRootUrl, address.toString())
+                ).add(c.getDisplayName(), online);
+            }
+        }
+    }
+
+    /**
+     * Jenkins is shutting down, computers are about to be disconnected.
+     */
+    /*package*/ void shutdown() {
+
+        shuttingDown = true;
+        synchronized (this) {
+
+            grace = false;
+            expected = null;
+            reconnected.clear();
+        }
+    }
+
+    @Initializer(after = InitMilestone.COMPLETED)
+    public static void started() {
+
+        final Computer[] computers = Jenkins.get().getComputers();
+        for (WatcherComputerListener listener: ExtensionList.lookup(WatcherComputerListener.class)) {
+
+            listener.awaitReconnect(computers);
+        }
+    }
+
+    @Terminator
+    public static void stopping() {
+
+        for (WatcherComputerListener listener: ExtensionList.lookup(WatcherComputerListener.class)) {
+
+            listener.shutdown();
+        }
+    }
+
+    /**
+     * Computer has recipients in either direction, its transitions are tracked to detect flapping.
+     */
+    private static boolean isWatched(final @NonNull Computer c) {
+
+        final WatcherNodeProperty property = getWatcherNodeProperty(c);
+        if (property == null) return false;
+
+        return property.getOnlineRecipients() != null || property.getOfflineRecipients() != null;
+    }
+
+    /**
+     * Computer has recipients to be notified when it goes online or offline.
+     */
+    private static boolean isWatched(final @NonNull Computer c, final boolean online) {
+
+        final WatcherNodeProperty property = getWatcherNodeProperty(c);
+        if (property == null) return false;
+
+        return (online ? property.getOnlineRecipients() : property.getOfflineRecipients()) != null;
+    }
+
+    private static WatcherNodeProperty getWatcherNodeProperty(
+            final Computer computer
+    ) {
+
+        final Node node = computer.getNode();
+        if (node==null) return null;
+
+        final DescribableList<NodeProperty<?>, NodePropertyDescriptor> properties;
+        if (node instanceof Jenkins) {
+            DescribableList<NodeProperty<?>, NodePropertyDescriptor> properties1 = ((Jenkins) node).getGlobalNodeProperties();
+            if (properties1 == null || properties1.isEmpty()) {
+                properties = node.getNodeProperties();
+            }
+            else {
+                properties = properties1;
+            }
+        }
+        else properties = node.getNodeProperties();
+
+        return properties.get(WatcherNodeProperty.class);
+    }
+
+    /**
+     * Check whether online/offline transition should be reported or suppressed as the computer is flapping.
+     */
+    private boolean reportTransition(final Computer c, final boolean online) {
+
+        final FlapDetector.Verdict verdict = flaps.transition(c.getName(), online, System.currentTimeMillis());
+        if (verdict == FlapDetector.Verdict.FLAPPING) {
+
+            final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+            getNotification(EventType.COMPUTER_FLAPPING).everyone()
+                    .subject("is flapping")
+                    .body(String.format(
+                            "Computer went online or offline %d times within %d minutes. "
+                                    + "Further notifications are suppressed until it is stable.",
+                            config.getFlapTransitions(), config.getFlapMinutes()
+                    ))
+                    .send(c)
+            ;
+        }
+
+        return verdict == FlapDetector.Verdict.NOTIFY;
+    }
+
+    /**
+     * Report flapping computers that are stable again.
+     */
+    /*package*/ void stabilize(final long now) {
+
+        for (Map.Entry<String, Boolean> stable: flaps.stabilize(now).entrySet()) {
+
+            final Computer c = computer(stable.getKey());
+            if (c == null) continue; // Removed in the meantime
+
+            getNotification(EventType.COMPUTER_STABLE).everyone()
+                    .subject("is stable, " + (stable.getValue() ? "online" : "offline"))
+                    .send(c)
+            ;
+        }
+    }
+
+    /*package*/ @CheckForNull Computer computer(final @NonNull String name) {
+
+        return Jenkins.get().getComputer(name);
+    }
+
+    private Notification.Builder getNotification(final @NonNull EventType type) {
+
+        final Notification.Builder builder = new Notification.Builder(mailer, jenkinsRootUrl);
+        builder.type(type);
+        return builder;
     }
 
     private static class Notification extends MailWatcherNotification {
@@ -148,6 +463,7 @@ public class WatcherComputerListener extends ComputerListener {
         private static class Builder extends MailWatcherNotification.Builder {
 
             private boolean online;
+            private boolean everyone;
 
             public Builder(final MailWatcherMailer mailer, final String jenkinsRootUrl) {
 
@@ -160,6 +476,15 @@ public class WatcherComputerListener extends ComputerListener {
                 return this;
             }
 
+            /**
+             * Notify both online and offline recipients.
+             */
+            public Builder everyone() {
+
+                this.everyone = true;
+                return this;
+            }
+
             @Override
             public void send(final Object o) {
 
@@ -169,39 +494,100 @@ public class WatcherComputerListener extends ComputerListener {
 
                 if (property!=null) {
 
-                    final String recipients = this.online
-                            ? property.getOnlineAddresses()
-                            : property.getOfflineAddresses()
+                    final Recipients recipients = this.everyone
+                            ? Recipients.union(property.getOnlineRecipients(), property.getOfflineRecipients())
+                            : this.online
+                                    ? property.getOnlineRecipients()
+                                    : property.getOfflineRecipients()
                     ;
                     this.recipients(recipients);
                 }
 
                 url(computer.getUrl());
                 name(computer.getDisplayName());
+                lane(computer.getName());
 
                 new Notification(this).send();
             }
+        }
+    }
+
+    private static final class Reconnected extends MailWatcherNotification {
+
+        public Reconnected(final Builder builder) {
+
+            super(builder);
+        }
+
+        @Override
+        protected String getSubject() {
+
+            return String.format("%s %s", getName(), super.getSubject());
+        }
+
+        private static final class Builder extends MailWatcherNotification.Builder {
+
+            private final List<String> back = new ArrayList<>();
+            private final List<String> missing = new ArrayList<>();
+
+            public Builder(final MailWatcherMailer mailer, final String jenkinsRootUrl, final @NonNull String recipient) {
+
+                super(mailer, jenkinsRootUrl);
+                recipients(recipient);
+            }
+
+            public void add(final @NonNull String computer, final boolean online) {
+
+                (online ? back : missing).add(computer);
+            }
+
+            @Override
+            public void send(final Object o) {
+
+                type(EventType.COMPUTERS_RECONNECTED);
+                name("Jenkins");
+                url("computer/");
+                subject(String.format(
+                        "restarted, %d of %d computers reconnected", back.size(), back.size() + missing.size()
+                ));
 
-            private static WatcherNodeProperty getWatcherNodeProperty(
-                    final Computer computer
-            ) {
+                final StringBuilder body = new StringBuilder();
+                append(body, "Reconnected:", back);
+                append(body, "Still offline:", missing);
+                body(body.toString());
 
-                final Node node = computer.getNode();
-                if (node==null) return null;
+                new Reconnected(this).send();
+            }
+
+            private static void append(final StringBuilder body, final String title, final List<String> computers) {
+
+                if (computers.isEmpty()) return;
 
-                final DescribableList<NodeProperty<?>, NodePropertyDescriptor> properties;
-                if (node instanceof Jenkins) {
-                    DescribableList<NodeProperty<?>, NodePropertyDescriptor> properties1 = ((Jenkins) node).getGlobalNodeProperties();
-                    if (properties1 == null || properties1.isEmpty()) {
-                        properties = node.getNodeProperties();
-                    }
-                    else {
-                        properties = properties1;
-                    }
+                body.append(title).append(NEWLINE);
+                for (String computer: computers) {
+
+                    body.append("    ").append(computer).append(NEWLINE);
                 }
-                else properties = node.getNodeProperties();
+            }
+        }
+    }
+
+    @Extension
+    public static final class FlapSweep extends PeriodicWork {
+
+        @Override
+        public long getRecurrencePeriod() {
+
+            return MIN;
+        }
+
+        @Override
+        protected void doRun() {
+
+            final long now = System.currentTimeMillis();
+            for (WatcherComputerListener listener: ExtensionList.lookup(WatcherComputerListener.class)) {
 
-                return properties.get(WatcherNodeProperty.class);
+                listener.stabilize(now);
             }
         }
     }
@@ -24,17 +24,21 @@
 package org.jenkinsci.plugins.mailwatcher;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Extension;
 import hudson.model.Item;
 import hudson.model.ItemGroup;
 import hudson.model.Job;
 import hudson.model.listeners.ItemListener;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Stack;
 
-import jenkins.model.Jenkins;
+import jakarta.mail.internet.InternetAddress;
+
+import org.jenkinsci.plugins.mailwatcher.jobConfigHistory.ConfigHistory;
 
 /**
  * Notify whenever Job configuration changes.
@@ -47,16 +51,20 @@ import jenkins.model.Jenkins;
 @Extension
 public class WatcherItemListener extends ItemListener {
 
+    /*package*/ static final int MAX_PENDING_UPDATES = 50_000;
+
+    /*package*/ static final int MAX_COALESCED_JOBS = 500;
+    /*package*/ static final int MAX_COALESCED_FOLDERS = 1000;
+
     private final @NonNull MailWatcherMailer mailer;
     private final String jenkinsRootUrl;
+    private final @NonNull NotificationDigest digest;
+    private final @NonNull WindowedBuffer<String, Notification> updates;
+    private final @NonNull WindowedBuffer<String, Notification> cascades;
 
-    @SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
     public WatcherItemListener() {
 
-        this(
-                new MailWatcherMailer(Jenkins.get()),
-                Jenkins.get().getRootUrl()
-        );
+        this(MailWatcherMailer.get(), null);
     }
 
     public WatcherItemListener(
@@ -70,6 +78,15 @@ public class WatcherItemListener extends ItemListener {
 
         this.mailer = mailer;
         this.jenkinsRootUrl = jenkinsRootUrl;
+        this.digest = new NotificationDigest(mailer, jenkinsRootUrl);
+        this.updates = new WindowedBuffer<>(
+                "updates", () -> MailWatcherConfiguration.get().debounceMillis(), true,
+                1, MAX_PENDING_UPDATES, this::flushUpdates
+        );
+        this.cascades = new WindowedBuffer<>(
+                "cascades", () -> MailWatcherConfiguration.get().coalesceMillis(), true,
+                MAX_COALESCED_JOBS, MAX_COALESCED_FOLDERS, this::flushCascade
+        );
     }
 
     @Override
@@ -78,39 +95,266 @@ public class WatcherItemListener extends ItemListener {
         if (!(item instanceof Job<?, ?>)) return;
 
         final Job<?, ?> job = (Job<?, ?>) item;
+        if (!isWatched(job)) return;
+
+        // Report pending updates before the rename, in the lane the rename is reported in
+        final ItemGroup<?> parent = job.getParent();
+        final String parentName = parent == null ? "" : parent.getFullName();
+        flushUpdates(parentName.isEmpty() ? oldName : parentName + "/" + oldName, job.getFullName());
 
-        getNotification().subject("renamed from " + oldName).send(job);
+        getNotification(EventType.JOB_RENAMED).subject("renamed from " + oldName).send(job);
     }
 
     @Override
     public void onUpdated(Item item) {
 
-        if (!(item instanceof Job<?, ?>)) return;
+        if (!(item instanceof Job<?, ?>) || !isWatched((Job<?, ?>) item)) return;
 
-        getNotification().subject("updated").send(item);
+        getNotification(EventType.JOB_UPDATED).debounce().subject("updated").send(item);
     }
 
     @Override
     public void onDeleted(Item item) {
 
-        if (!(item instanceof Job<?, ?>)) return;
+        if (!(item instanceof Job<?, ?>) || !isWatched((Job<?, ?>) item)) return;
+
+        // Report pending updates before the deletion
+        updates.flush(item.getFullName());
 
-        getNotification().subject("deleted").send(item);
+        getNotification(EventType.JOB_DELETED).coalesce().resolveNow().subject("deleted").send(item);
     }
 
-    private Notification.Builder getNotification() {
+    /**
+     * Report jobs moved to another folder or whose ancestor was renamed, renamed jobs are reported by {@link #onRenamed}.
+     */
+    @Override
+    public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+
+        if (!(item instanceof Job<?, ?>) || !isWatched((Job<?, ?>) item)) return;
+
+        if (!baseName(oldFullName).equals(baseName(newFullName))) return;
 
-        return new Notification.Builder(mailer, jenkinsRootUrl);
+        // Report pending updates before the move, in the lane the move is reported in
+        flushUpdates(oldFullName, newFullName);
+
+        getNotification(EventType.JOB_MOVED).coalesce().subject("moved from " + oldFullName).send(item);
+    }
+
+    /**
+     * Most jobs are not watched, do not compose anything for them.
+     */
+    private static boolean isWatched(final @NonNull Job<?, ?> job) {
+
+        final WatcherJobProperty property = job.getProperty(WatcherJobProperty.class);
+        return property != null && property.getWatcherRecipients() != null;
+    }
+
+    private Notification.Builder getNotification(final @NonNull EventType type) {
+
+        final Notification.Builder builder = new Notification.Builder(mailer, jenkinsRootUrl, this);
+        builder.type(type);
+        return builder;
+    }
+
+    private void submit(final @NonNull Notification notification, final boolean debounce, final boolean coalesce) {
+
+        if (debounce && notification.shouldNotify() && MailWatcherConfiguration.get().debounceMillis() > 0) {
+
+            if (updates.add(notification.fullName, notification)) return;
+        }
+
+        if (coalesce && notification.shouldNotify() && MailWatcherConfiguration.get().coalesceMillis() > 0) {
+
+            final String key = notification.getType() + " " + parentName(notification.fullName);
+            if (cascades.add(key, notification)) return;
+        }
+
+        deliver(notification);
+    }
+
+    /**
+     * Report folder deletion or bulk move as one notification per recipient.
+     */
+    private void flushCascade(final @NonNull String key, final @NonNull WindowedBuffer.Batch<Notification> batch) {
+
+        final List<Notification> jobs = batch.events();
+        if (jobs.size() == 1 && batch.dropped() == 0) {
+
+            deliver(jobs.get(0));
+            return;
+        }
+
+        final Map<String, Cascade.Builder> recipients = new LinkedHashMap<>();
+        final String folder = key.substring(key.indexOf(' ') + 1);
+        for (Notification job: jobs) {
+
+            final InternetAddress[] addresses = MailWatcherNotification.addresses(job.recipients());
+            if (addresses == null) {
+
+                deliver(job);
+                continue;
+            }
+
+            for (InternetAddress address: addresses) {
+
+                recipients.computeIfAbsent(
+                        address.getAddress().toLowerCase(Locale.ENGLISH),
+                        k -> new Cascade.Builder(this, folder, address.toString(), batch.dropped())
+                ).add(job);
+            }
+        }
+
+        for (Cascade.Builder cascade: recipients.values()) {
+
+            cascade.send(null);
+        }
+    }
+
+    private void flushUpdates(final @NonNull String fullName, final @NonNull WindowedBuffer.Batch<Notification> batch) {
+
+        deliver(collapse(batch));
+    }
+
+    /**
+     * Report pending updates of a job that is about to be reported under new name.
+     */
+    private void flushUpdates(final @NonNull String oldFullName, final @NonNull String newFullName) {
+
+        final WindowedBuffer.Batch<Notification> pending = updates.remove(oldFullName);
+        if (pending != null) {
+
+            deliver(collapse(pending).in(newFullName));
+        }
+    }
+
+    /**
+     * Collapse burst of updates into single notification covering all the changes.
+     */
+    private static @NonNull Notification collapse(final @NonNull WindowedBuffer.Batch<Notification> batch) {
+
+        final Notification first = batch.first();
+        final Notification last = batch.last();
+
+        return first == last || last == null ? first : last.since(first);
+    }
+
+    private void deliver(final @NonNull MailWatcherNotification notification) {
+
+        if (digest.add(notification)) {
+
+            NotificationMetrics.get().record(notification.getType(), NotificationMetrics.Outcome.DIGESTED);
+        } else {
+
+            notification.send();
+        }
+    }
+
+    private static @NonNull String parentName(final @NonNull String fullName) {
+
+        final int slash = fullName.lastIndexOf('/');
+        return slash < 0 ? "" : fullName.substring(0, slash);
+    }
+
+    private static @NonNull String baseName(final @NonNull String fullName) {
+
+        return fullName.substring(fullName.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Url of the item relative to Jenkins root.
+     */
+    /*package*/ static @NonNull String url(final @NonNull Item item) {
+
+        final StringBuilder urlPath = new StringBuilder(64);
+        appendUrl(urlPath, item);
+        return urlPath.toString();
+    }
+
+    // Ancestors first, the nesting is too shallow for the recursion to matter
+    private static void appendUrl(final @NonNull StringBuilder urlPath, final @NonNull Item item) {
+
+        if (item.getParent() instanceof Item parent) {
+
+            appendUrl(urlPath, parent);
+        }
+        urlPath.append(item.getShortUrl());
     }
 
     private static class Notification extends MailWatcherNotification {
 
-        private final @NonNull Job<?, ?> job;
+        private final @NonNull String fullName;
+        // Time of the first update covered
+        private final long since;
+        private final boolean burst;
+        // Looked up once built, most updates are debounced or digested away before that
+        private volatile Resolved resolved;
 
         public Notification(final Builder builder) {
 
             super(builder);
-            job = builder.job;
+            fullName = builder.fullName;
+            since = System.currentTimeMillis();
+            burst = false;
+        }
+
+        private Notification(final Notification latest, final long since, final boolean burst, final String lane) {
+
+            super(latest, lane);
+            fullName = latest.fullName;
+            this.since = since;
+            this.burst = burst;
+        }
+
+        /**
+         * Notification covering changes since the earlier one.
+         */
+        private @NonNull Notification since(final @NonNull Notification earlier) {
+
+            return new Notification(this, earlier.since, true, getLane());
+        }
+
+        /**
+         * Same notification sent in the lane of the job under another name.
+         */
+        private @NonNull Notification in(final @NonNull String lane) {
+
+            return lane.equals(getLane()) ? this : new Notification(this, since, burst, lane);
+        }
+
+        /**
+         * Look the job up right away, it is gone by the time the notification is built.
+         */
+        private void resolve(final @NonNull Job<?, ?> job) {
+
+            resolved = new Resolved(this, job);
+        }
+
+        /**
+         * Job under the name it is reported under.
+         */
+        private @NonNull Resolved resolved() {
+
+            Resolved resolved = this.resolved;
+            if (resolved == null) {
+
+                final Job<?, ?> job = mailer.job(getLane());
+                resolved = job == null ? new Resolved(getLane()) : new Resolved(this, job);
+                this.resolved = resolved;
+            }
+
+            return resolved;
+        }
+
+        @Override
+        public String getUrl() {
+
+            return resolved().url;
+        }
+
+        @Override
+        public String getName() {
+
+            return resolved().name;
         }
 
         @Override
@@ -123,53 +367,191 @@ public class WatcherItemListener extends ItemListener {
         protected @NonNull Map<String, String> pairs() {
             final Map<String, String> pairs = super.pairs();
 
-            final String historyUrl = mailer.configHistory().lastChangeDiffUrl(job);
-            if (historyUrl != null) {
+            final Resolved resolved = resolved();
+            if (resolved.change != null) {
 
+                final String historyUrl = mailer.configHistory().diffUrl(resolved.shortUrl, resolved.change);
                 pairs.put("Change", mailer.absoluteUrl(historyUrl).toString());
             }
 
             return pairs;
         }
 
+        /**
+         * What the notification tells about the job, without retaining it.
+         */
+        private static final class Resolved {
+
+            private final @NonNull String url;
+            private final @NonNull String name;
+            private final @NonNull String shortUrl;
+            private final ConfigHistory.Change change;
+
+            // No such job anymore
+            private Resolved(final @NonNull String fullName) {
+
+                url = "";
+                name = fullName;
+                shortUrl = "";
+                change = null;
+            }
+
+            private Resolved(final @NonNull Notification notification, final @NonNull Job<?, ?> job) {
+
+                url = WatcherItemListener.url(job);
+                name = job.getFullDisplayName();
+                shortUrl = job.getShortUrl();
+
+                final ConfigHistory history = notification.mailer.configHistory();
+                change = notification.burst ? history.changeSince(job, notification.since) : history.lastChange(job);
+            }
+        }
+
         private static class Builder extends MailWatcherNotification.Builder {
 
-            private Job<?, ?> job;
+            private final @NonNull WatcherItemListener listener;
+            private boolean debounce;
+            private boolean coalesce;
+            private boolean resolveNow;
+            private String fullName;
 
-            public Builder(final MailWatcherMailer mailer, final String jenkinsRootUrl) {
+            public Builder(
+                    final MailWatcherMailer mailer,
+                    final String jenkinsRootUrl,
+                    final WatcherItemListener listener
+            ) {
 
                 super(mailer, jenkinsRootUrl);
+                this.listener = listener;
+            }
+
+            /**
+             * Collapse with other updates of the same job that follow shortly.
+             */
+            public Builder debounce() {
+
+                this.debounce = true;
+                return this;
+            }
+
+            /**
+             * Report together with other jobs of the same folder changed the same way shortly.
+             */
+            public Builder coalesce() {
+
+                this.coalesce = true;
+                return this;
+            }
+
+            /**
+             * Look the job up right away rather than once the notification is built, as it is about to be gone.
+             */
+            public Builder resolveNow() {
+
+                this.resolveNow = true;
+                return this;
             }
 
             @Override
             public void send(final Object o) {
 
-                job = (Job<?, ?>) o;
+                final Job<?, ?> job = (Job<?, ?>) o;
+                fullName = job.getFullName();
+                lane(fullName);
 
+                // Digests and folder notifications are put together by recipient before anything is built
                 final WatcherJobProperty property = job.getProperty(
                         WatcherJobProperty.class
                 );
 
                 if (property!=null) {
 
-                    recipients(property.getWatcherAddresses());
+                    recipients(property.getWatcherRecipients());
                 }
 
-                Stack<String> stack = new Stack<>();
-                stack.push(job.getShortUrl());
-                ItemGroup<?> parent = job.getParent();
-                while (parent instanceof Item item) {
-                    stack.push(item.getShortUrl());
-                    parent = item.getParent();
+                // The notification must not retain the job, the rest is looked up by name once it is built
+                final Notification notification = new Notification(this);
+                if (resolveNow) notification.resolve(job);
+
+                listener.submit(notification, debounce, coalesce);
+            }
+        }
+    }
+
+    /**
+     * Jobs of one folder deleted or moved together, reported to a single recipient.
+     */
+    private static final class Cascade extends MailWatcherNotification {
+
+        public Cascade(final Builder builder) {
+
+            super(builder);
+        }
+
+        private static final class Builder extends MailWatcherNotification.Builder {
+
+            private final @NonNull WatcherItemListener listener;
+            private final @NonNull String folder;
+            private final int dropped;
+            private final List<Notification> jobs = new ArrayList<>();
+
+            public Builder(
+                    final @NonNull WatcherItemListener listener, final @NonNull String folder,
+                    final @NonNull String recipient, final int dropped
+            ) {
+
+                super(listener.mailer, listener.jenkinsRootUrl);
+                this.listener = listener;
+                this.folder = folder;
+                this.dropped = dropped;
+                recipients(recipient);
+                lane(folder);
+            }
+
+            public void add(final @NonNull Notification job) {
+
+                jobs.add(job);
+            }
+
+            @Override
+            public void send(final Object o) {
+
+                final Notification first = jobs.get(0);
+                final boolean moved = first.getType() == EventType.JOB_MOVED;
+                final int total = jobs.size() + dropped;
+                final String name = folder.isEmpty() ? "Jenkins" : folder;
+
+                // Folder url is what precedes the job short url
+                final String jobUrl = first.getUrl();
+                final String shortUrl = first.resolved().shortUrl;
+                final boolean nested = jobUrl != null && jobUrl.endsWith(shortUrl);
+
+                type(first.getType());
+                // Built by the timer thread, the jobs were changed by whoever changed the first one
+                initiatorId(first.getInitiatorId());
+                name(name);
+                url(nested ? jobUrl.substring(0, jobUrl.length() - shortUrl.length()) : "");
+                subject(String.format(
+                        "%s %s %s", total == 1 ? "1 job" : total + " jobs", moved ? "moved to" : "deleted from", name
+                ));
+
+                final StringBuilder body = new StringBuilder();
+                for (Notification job: jobs) {
+
+                    body.append(job.getSubject()).append(NEWLINE);
+                    if (moved) {
+
+                        body.append("    ").append(job.jenkinsRootUrl()).append(job.getUrl()).append(NEWLINE);
+                    }
                 }
-                StringBuilder urlPath = new StringBuilder();
-                while (!stack.isEmpty()) {
-                    urlPath.append(stack.pop());
+
+                if (dropped > 0) {
+
+                    body.append("... and ").append(dropped).append(" more jobs").append(NEWLINE);
                 }
-                url(urlPath.toString());
-                name(job.getFullDisplayName());
 
-                new Notification(this).send();
+                body(body.toString());
+                listener.deliver(new Cascade(this));
             }
         }
     }
@@ -23,6 +23,7 @@
  */
 package org.jenkinsci.plugins.mailwatcher;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.model.JobProperty;
@@ -44,11 +45,19 @@ import org.kohsuke.stapler.StaplerRequest2;
 public class WatcherJobProperty extends JobProperty<Job<?, ?>> {
 
     private final String watcherAddresses;
+    private transient final Recipients watcherRecipients;
 
     @DataBoundConstructor
     public WatcherJobProperty(final String watcherAddresses) {
 
-        this.watcherAddresses = watcherAddresses;
+        this.watcherRecipients = Recipients.of(watcherAddresses);
+        this.watcherAddresses = watcherRecipients == null ? watcherAddresses : watcherRecipients.toString();
+    }
+
+    private Object readResolve() {
+
+        // Share address lists between jobs configured with the same value
+        return new WatcherJobProperty(watcherAddresses);
     }
 
     public String getWatcherAddresses() {
@@ -56,6 +65,11 @@ public class WatcherJobProperty extends JobProperty<Job<?, ?>> {
         return watcherAddresses;
     }
 
+    /*package*/ @CheckForNull Recipients getWatcherRecipients() {
+
+        return watcherRecipients;
+    }
+
     @Extension
     public static class DescriptorImpl extends JobPropertyDescriptor {
 
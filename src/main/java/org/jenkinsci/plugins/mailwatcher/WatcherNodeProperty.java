@@ -23,6 +23,7 @@
  */
 package org.jenkinsci.plugins.mailwatcher;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.model.Node;
@@ -45,14 +46,24 @@ public class WatcherNodeProperty extends NodeProperty<Node> {
 
     private final String onlineAddresses;
     private final String offlineAddresses;
+    private transient final Recipients onlineRecipients;
+    private transient final Recipients offlineRecipients;
 
     @DataBoundConstructor
     public WatcherNodeProperty(
             final String onlineAddresses, final String offlineAddresses
     ) {
 
-        this.onlineAddresses = onlineAddresses;
-        this.offlineAddresses = offlineAddresses;
+        this.onlineRecipients = Recipients.of(onlineAddresses);
+        this.offlineRecipients = Recipients.of(offlineAddresses);
+        this.onlineAddresses = onlineRecipients == null ? onlineAddresses : onlineRecipients.toString();
+        this.offlineAddresses = offlineRecipients == null ? offlineAddresses : offlineRecipients.toString();
+    }
+
+    private Object readResolve() {
+
+        // Share address lists between nodes configured with the same value
+        return new WatcherNodeProperty(onlineAddresses, offlineAddresses);
     }
 
     public String getOnlineAddresses() {
@@ -65,6 +76,16 @@ public class WatcherNodeProperty extends NodeProperty<Node> {
         return offlineAddresses;
     }
 
+    /*package*/ @CheckForNull Recipients getOnlineRecipients() {
+
+        return onlineRecipients;
+    }
+
+    /*package*/ @CheckForNull Recipients getOfflineRecipients() {
+
+        return offlineRecipients;
+    }
+
     @Extension
     public static class DescriptorImpl extends NodePropertyDescriptor {
 
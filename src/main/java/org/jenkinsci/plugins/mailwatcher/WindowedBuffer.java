@@ -0,0 +1,437 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.util.Timer;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Collect events per key and hand them over in batches once their window
+ * elapses.
+ * <p>
+ * All pending batches share a single priority queue of deadlines polled by
+ * one timer task, so the number of pending keys does not translate to the
+ * number of scheduled timers. Batches are bounded: events past the limit are
+ * only counted and keys past the limit are rejected so callers can fall back
+ * to immediate delivery.
+ * <p>
+ * Buffers feed one another, so once shutdown starts they stop buffering and
+ * hand every event over right away. Flushing one buffer cannot leave events
+ * behind in a buffer that was flushed before it.
+ *
+ * @param <K> Batch key.
+ * @param <E> Buffered event.
+ */
+@Restricted(NoExternalUse.class)
+public final class WindowedBuffer<K, E> {
+
+    private static final Logger LOGGER = Logger.getLogger(WindowedBuffer.class.getName());
+
+    // All buffers to flush on shutdown; guarded by itself
+    private static final Set<WindowedBuffer<?, ?>> ALL = Collections.newSetFromMap(new WeakHashMap<>());
+
+    /**
+     * Receive expired batch.
+     */
+    /*package*/ interface Flush<K, E> {
+
+        void flush(@NonNull K key, @NonNull Batch<E> batch);
+    }
+
+    private final @NonNull String name;
+    private final @NonNull LongSupplier window;
+    private final boolean trailing;
+    private final int maxEvents;
+    private final int maxKeys;
+    private final @NonNull Flush<K, E> flush;
+
+    private final Map<K, Batch<E>> batches = new ConcurrentHashMap<>();
+    private final PriorityBlockingQueue<Deadline<K, E>> deadlines = new PriorityBlockingQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // Jenkins is terminating, events are not buffered
+    private volatile boolean closed;
+
+    /**
+     * @param window Milliseconds to wait, read when batch is opened.
+     * @param trailing Restart the window with every event, until it was open for twice the window.
+     * @param maxEvents Events retained per batch.
+     * @param maxKeys Batches open at once.
+     */
+    /*package*/ WindowedBuffer(
+            final @NonNull String name, final @NonNull LongSupplier window, final boolean trailing,
+            final int maxEvents, final int maxKeys, final @NonNull Flush<K, E> flush
+    ) {
+
+        this.name = name;
+        this.window = window;
+        this.trailing = trailing;
+        this.maxEvents = Math.max(1, maxEvents);
+        this.maxKeys = Math.max(1, maxKeys);
+        this.flush = flush;
+
+        synchronized (ALL) {
+
+            ALL.add(this);
+        }
+    }
+
+    /**
+     * Buffer event.
+     *
+     * @return false when the buffer is full and the event was not accepted.
+     */
+    /*package*/ boolean add(final @NonNull K key, final @NonNull E event) {
+
+        return add(key, event, System.currentTimeMillis());
+    }
+
+    /*package*/ boolean add(final @NonNull K key, final @NonNull E event, final long now) {
+
+        if (closed) {
+
+            final Batch<E> batch = new Batch<>(now, 0, maxEvents);
+            batch.add(event, now);
+            deliver(key, batch);
+            return true;
+        }
+
+        final boolean[] accepted = { true };
+        batches.compute(key, (k, batch) -> {
+
+            if (batch == null) {
+
+                if (batches.size() >= maxKeys) {
+
+                    accepted[0] = false;
+                    return null;
+                }
+
+                batch = new Batch<>(now, Math.max(0, window.getAsLong()), maxEvents);
+                deadlines.add(new Deadline<>(k, batch, batch.due(trailing)));
+            }
+
+            batch.add(event, now);
+            return batch;
+        });
+
+        if (accepted[0]) schedule();
+
+        return accepted[0];
+    }
+
+    /**
+     * Flush batch for key now, if any.
+     */
+    /*package*/ void flush(final @NonNull K key) {
+
+        final Batch<E> batch = remove(key);
+        if (batch != null) deliver(key, batch);
+    }
+
+    /**
+     * Take batch for key out of the buffer, the caller delivers its events.
+     */
+    /*package*/ @CheckForNull Batch<E> remove(final @NonNull K key) {
+
+        return batches.remove(key);
+    }
+
+    /**
+     * Flush batches whose window has elapsed.
+     */
+    /*package*/ void expire(final long now) {
+
+        final List<Deadline<K, E>> expired = new ArrayList<>();
+        synchronized (deadlines) {
+
+            Deadline<K, E> deadline;
+            while ((deadline = deadlines.peek()) != null && deadline.due <= now) {
+
+                expired.add(deadlines.poll());
+            }
+        }
+
+        for (Deadline<K, E> deadline: expired) {
+
+            final boolean[] expiredBatch = { false };
+            batches.computeIfPresent(deadline.key, (k, batch) -> {
+
+                // Stale deadline of already flushed batch
+                if (batch != deadline.batch) return batch;
+
+                final long due = batch.due(trailing);
+                if (due > now) {
+
+                    deadlines.add(new Deadline<>(k, batch, due));
+                    return batch;
+                }
+
+                expiredBatch[0] = true;
+                return null;
+            });
+
+            if (expiredBatch[0]) deliver(deadline.key, deadline.batch);
+        }
+    }
+
+    /*package*/ void flushAll() {
+
+        synchronized (deadlines) {
+
+            deadlines.clear();
+        }
+
+        for (K key: new ArrayList<>(batches.keySet())) {
+
+            flush(key);
+        }
+    }
+
+    /**
+     * Deliver events right away from now on.
+     */
+    /*package*/ void close() {
+
+        closed = true;
+    }
+
+    /*package*/ void open() {
+
+        closed = false;
+    }
+
+    /*package*/ int size() {
+
+        return batches.size();
+    }
+
+    private void deliver(final @NonNull K key, final @NonNull Batch<E> batch) {
+
+        try {
+
+            flush.flush(key, batch);
+        } catch (RuntimeException ex) {
+
+            LOGGER.log(Level.WARNING, "mail-watcher-plugin: failed to flush " + name + " for " + key, ex);
+        }
+    }
+
+    private void schedule() {
+
+        if (!scheduled.compareAndSet(false, true)) return;
+
+        final Deadline<K, E> next = deadlines.peek();
+        final long delay = next == null ? 0 : next.due - System.currentTimeMillis();
+        Timer.get().schedule(this::tick, Math.max(TICK_MILLIS, delay), TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+
+        try {
+
+            expire(System.currentTimeMillis());
+        } finally {
+
+            scheduled.set(false);
+            if (!batches.isEmpty()) schedule();
+        }
+    }
+
+    private static final long TICK_MILLIS = 100;
+
+    @Terminator(attains = NotificationDispatcher.FLUSHED)
+    public static void shutdown() {
+
+        final List<WindowedBuffer<?, ?>> buffers = all();
+
+        // Events flushed from one buffer to another are delivered right away
+        for (WindowedBuffer<?, ?> buffer: buffers) {
+
+            buffer.close();
+        }
+
+        // Catch events added while the buffers were being closed
+        boolean pending = true;
+        while (pending) {
+
+            pending = false;
+            for (WindowedBuffer<?, ?> buffer: buffers) {
+
+                buffer.flushAll();
+                pending |= buffer.size() > 0;
+            }
+        }
+    }
+
+    /**
+     * Buffer again in case Jenkins is started in the same JVM.
+     */
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void startup() {
+
+        for (WindowedBuffer<?, ?> buffer: all()) {
+
+            buffer.open();
+        }
+    }
+
+    private static @NonNull List<WindowedBuffer<?, ?>> all() {
+
+        synchronized (ALL) {
+
+            return new ArrayList<>(ALL);
+        }
+    }
+
+    /**
+     * Events collected for single key.
+     */
+    /*package*/ static final class Batch<E> {
+
+        private final long opened;
+        private final long window;
+        private final int maxEvents;
+        private final List<E> events = new ArrayList<>();
+        private volatile long updated;
+        private E last;
+        private int dropped;
+
+        private Batch(final long opened, final long window, final int maxEvents) {
+
+            this.opened = opened;
+            this.updated = opened;
+            this.window = window;
+            this.maxEvents = maxEvents;
+        }
+
+        // Called from within map compute so never concurrently
+        private void add(final @NonNull E event, final long now) {
+
+            if (events.size() < maxEvents) {
+
+                events.add(event);
+            } else {
+
+                dropped++;
+            }
+
+            last = event;
+            updated = now;
+        }
+
+        private long due(final boolean trailing) {
+
+            return trailing
+                    ? Math.min(updated + window, opened + 2 * window)
+                    : opened + window
+            ;
+        }
+
+        /*package*/ long opened() {
+
+            return opened;
+        }
+
+        /*package*/ long updated() {
+
+            return updated;
+        }
+
+        /**
+         * Retained events in order of arrival.
+         */
+        /*package*/ @NonNull List<E> events() {
+
+            return Collections.unmodifiableList(events);
+        }
+
+        /*package*/ @NonNull E first() {
+
+            return events.get(0);
+        }
+
+        /**
+         * Most recent event, retained even when past the limit.
+         */
+        /*package*/ @CheckForNull E last() {
+
+            return last;
+        }
+
+        /**
+         * Number of events not retained.
+         */
+        /*package*/ int dropped() {
+
+            return dropped;
+        }
+
+        /*package*/ int total() {
+
+            return events.size() + dropped;
+        }
+    }
+
+    private static final class Deadline<K, E> implements Comparable<Deadline<K, E>> {
+
+        private final @NonNull K key;
+        private final @NonNull Batch<E> batch;
+        private final long due;
+
+        private Deadline(final @NonNull K key, final @NonNull Batch<E> batch, final long due) {
+
+            this.key = key;
+            this.batch = batch;
+            this.due = due;
+        }
+
+        @Override
+        public int compareTo(final Deadline<K, E> other) {
+
+            return Long.compare(due, other.due);
+        }
+    }
+}
@@ -25,44 +25,312 @@ package org.jenkinsci.plugins.mailwatcher.jobConfigHistory;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
 import hudson.model.Job;
-import hudson.plugins.jobConfigHistory.ConfigInfo;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.plugins.jobConfigHistory.HistoryDescr;
 import hudson.plugins.jobConfigHistory.JobConfigHistory;
-import hudson.plugins.jobConfigHistory.JobConfigHistoryProjectAction;
+import hudson.plugins.jobConfigHistory.JobConfigHistoryConsts;
+import hudson.plugins.jobConfigHistory.PluginUtils;
 
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.util.SystemProperties;
 
 /**
  * @author ogondza
  */
 public class ConfigHistory {
 
+    private static final Logger LOGGER = Logger.getLogger(ConfigHistory.class.getName());
+
+    /**
+     * Number of jobs to remember latest revisions for.
+     */
+    /*package*/ static final int MAX_CACHED = SystemProperties.getInteger(ConfigHistory.class.getName() + ".maxCached", 1000);
+
+    // Seconds the revision can be older than the save event
+    private static final int SAVE_SECONDS = 2;
+
+    private static final Set<ConfigHistory> ALL = Collections.newSetFromMap(new WeakHashMap<>());
+
     private final JobConfigHistory plugin;
 
+    /**
+     * Latest change per job full name, least recently used first. Null values for jobs with less than two revisions.
+     */
+    private final Map<String, Change> cache = new LinkedHashMap<String, Change>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Change> eldest) {
+
+            return size() > MAX_CACHED;
+        }
+    };
+
     public ConfigHistory(final JobConfigHistory plugin) {
 
         this.plugin = plugin;
+
+        synchronized (ALL) {
+
+            ALL.add(this);
+        }
     }
 
     public @CheckForNull String lastChangeDiffUrl(final @NonNull Job<?, ?> job) {
 
+        final Change change = lastChange(job);
+        if (change == null) return null;
+
+        return diffUrl(job, change);
+    }
+
+    /**
+     * Get the two most recent configurations of the job.
+     */
+    public @CheckForNull Change lastChange(final @NonNull Job<?, ?> job) {
+
+        if (plugin == null) return null;
+
+        final String name = job.getFullName();
+        synchronized (cache) {
+
+            if (cache.containsKey(name)) return cache.get(name);
+        }
+
+        final Change change = loadLastChange(job);
+        synchronized (cache) {
+
+            cache.put(name, change);
+        }
+        return change;
+    }
+
+    /**
+     * Read the two most recent revisions from the history storage bypassing the cache.
+     *
+     * Revision names sort chronologically so there is no need to parse the history entries.
+     */
+    protected @CheckForNull Change loadLastChange(final @NonNull Job<?, ?> job) {
+
+        final SortedMap<String, HistoryDescr> revisions = revisions(job);
+        if (revisions == null || revisions.size() < 2) return null;
+
+        final String to = revisions.lastKey();
+        return new Change(revisions.headMap(to).lastKey(), to);
+    }
+
+    /**
+     * Get the change from the configuration preceding the given time to the most recent one.
+     *
+     * Used for a burst of updates known by the time of the first one, so the history is listed each time.
+     * The revisions the burst recorded can be a few seconds older than that.
+     */
+    public @CheckForNull Change changeSince(final @NonNull Job<?, ?> job, final long since) {
+
         if (plugin == null) return null;
 
-        final List<ConfigInfo> configs = storedConfigurations(job);
-        if (configs == null || configs.size() < 2) return null;
+        final SortedMap<String, HistoryDescr> revisions = revisions(job);
+        if (revisions == null || revisions.size() < 2) return null;
+
+        final String to = revisions.lastKey();
+        final SimpleDateFormat format = new SimpleDateFormat(JobConfigHistoryConsts.ID_FORMATTER);
+        final SortedMap<String, HistoryDescr> before = revisions.headMap(format.format(new Date(since - SAVE_SECONDS * 1000L)));
+
+        // Created during the burst, or no revision recorded by it as all the saves were duplicates
+        final String from = before.isEmpty() ? revisions.firstKey() : before.lastKey();
+        return new Change(from.equals(to) ? revisions.headMap(to).lastKey() : from, to);
+    }
+
+    protected @CheckForNull SortedMap<String, HistoryDescr> revisions(final @NonNull Job<?, ?> job) {
+
+        return PluginUtils.getHistoryDao().getRevisions(job.getConfigFile());
+    }
+
+    /**
+     * Job configuration was saved, shift the cached change to the new revision.
+     *
+     * The history is never listed here. Jobs not cached are left alone to be loaded on first lookup,
+     * and so are jobs that had no change cached. When no new revision is found, as the save was a
+     * duplicate, the cached change is kept.
+     */
+    public void saved(final @NonNull Job<?, ?> job) {
+
+        if (plugin == null) return;
+
+        final String name = job.getFullName();
+        final Change cached;
+        synchronized (cache) {
+
+            if (!cache.containsKey(name)) return;
+            cached = cache.get(name);
+            if (cached == null) {
+
+                cache.remove(name);
+                return;
+            }
+        }
+
+        final String saved = savedRevision(job, cached.getTo());
+        if (saved == null) return;
+
+        synchronized (cache) {
+
+            // Not to resurrect job evicted nor to override a change shifted in the meantime
+            if (cache.get(name) == cached) cache.put(name, new Change(cached.getTo(), saved));
+        }
+    }
+
+    /**
+     * Find the revision recorded by the save that has just happened.
+     *
+     * Revisions are named after the second they were saved in, so only the last few seconds are probed.
+     *
+     * @return null if there is no revision newer than the previous one, as when the save was a duplicate.
+     */
+    protected @CheckForNull String savedRevision(final @NonNull Job<?, ?> job, final @NonNull String previous) {
+
+        final XmlFile file = job.getConfigFile();
+        final SimpleDateFormat format = new SimpleDateFormat(JobConfigHistoryConsts.ID_FORMATTER);
+        final long now = System.currentTimeMillis();
+        for (int second = 0; second <= SAVE_SECONDS; second++) {
+
+            final String revision = format.format(new Date(now - second * 1000L));
+            if (revision.compareTo(previous) <= 0) return null;
+
+            if (PluginUtils.getHistoryDao().hasOldRevision(file, revision)) return revision;
+        }
+
+        return null;
+    }
+
+    /*package*/ void evict(final @NonNull String name) {
+
+        synchronized (cache) {
+
+            cache.remove(name);
+        }
+    }
+
+    /*package*/ int cached() {
+
+        synchronized (cache) {
+
+            return cache.size();
+        }
+    }
+
+    private static @NonNull List<ConfigHistory> all() {
+
+        synchronized (ALL) {
+
+            return new ArrayList<>(ALL);
+        }
+    }
+
+    public @NonNull String diffUrl(final @NonNull Job<?, ?> job, final @NonNull Change change) {
+
+        return diffUrl(job.getShortUrl(), change);
+    }
+
+    public @NonNull String diffUrl(final @NonNull String jobUrl, final @NonNull Change change) {
 
         return String.format(
                 "%sjobConfigHistory/showDiffFiles?timestamp1=%s&timestamp2=%s",
-                job.getShortUrl(), configs.get(1).getDate(), configs.get(0).getDate()
+                jobUrl, change.getFrom(), change.getTo()
         );
     }
 
-    private @CheckForNull List<ConfigInfo> storedConfigurations(final Job<?, ?> job) {
+    /**
+     * Refresh cached revisions once the job config history plugin has recorded the new one.
+     */
+    @Extension(ordinal = -100, optional = true)
+    public static final class SaveListener extends SaveableListener {
+
+        @Override
+        public void onChange(final Saveable o, final XmlFile file) {
+
+            if (!(o instanceof Job)) return;
+
+            for (ConfigHistory history: all()) {
+                try {
+                    history.saved((Job<?, ?>) o);
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, "Unable to read configuration history of " + file, ex);
+                    history.evict(((Job<?, ?>) o).getFullName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget revisions of jobs that are gone or moved.
+     */
+    @Extension(optional = true)
+    public static final class LocationListener extends ItemListener {
+
+        @Override
+        public void onLocationChanged(final Item item, final String oldFullName, final String newFullName) {
+
+            for (ConfigHistory history: all()) {
+                history.evict(oldFullName);
+            }
+        }
+
+        @Override
+        public void onDeleted(final Item item) {
+
+            for (ConfigHistory history: all()) {
+                history.evict(item.getFullName());
+            }
+        }
+    }
+
+    /**
+     * Range of configuration revisions.
+     */
+    public static final class Change {
+
+        private final @NonNull String from;
+        private final @NonNull String to;
+
+        public Change(final @NonNull String from, final @NonNull String to) {
+
+            this.from = from;
+            this.to = to;
+        }
+
+        public @NonNull String getFrom() {
+
+            return from;
+        }
+
+        public @NonNull String getTo() {
 
-        final JobConfigHistoryProjectAction action = job.getAction(JobConfigHistoryProjectAction.class);
+            return to;
+        }
 
-        if (action == null) return null;
+        /**
+         * Range starting where the earlier change started and ending with this one.
+         */
+        public @NonNull Change since(final @NonNull Change earlier) {
 
-        return action.getJobConfigs();
+            return new Change(earlier.from, to);
+        }
     }
 }
@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher.workflow;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jenkinsci.plugins.mailwatcher.NodeAwailabilityListener;
+import org.jenkinsci.plugins.workflow.actions.WorkspaceAction;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.flow.FlowExecutionList;
+import org.jenkinsci.plugins.workflow.flow.GraphListener;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graph.StepNode;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Release computers occupied by Pipeline <code>node</code> blocks once the block ends.
+ * <p>
+ * The executor is recorded on the start node of the step, reachable from its end node
+ * so running flows are only inspected when a computer starts being drained.
+ */
+@Restricted(NoExternalUse.class)
+@Extension(optional = true)
+public final class NodeBlockListener implements GraphListener {
+
+    @Override
+    public void onNewHead(final FlowNode node) {
+
+        final NodeAwailabilityListener listener = NodeAwailabilityListener.get();
+        if (!listener.isDraining() || !(node instanceof BlockEndNode)) return;
+
+        final FlowNode start = ((BlockEndNode<?>) node).getStartNode();
+        final String nodeName = nodeName(start);
+        if (nodeName == null) return;
+
+        listener.released(nodeName, key(start));
+    }
+
+    /**
+     * Keys of the <code>node</code> blocks of running Pipelines open on the computer.
+     * <p>
+     * Only blocks enclosing a current head are open, those whose end node was added already are released.
+     */
+    public static @NonNull Set<Object> open(final @NonNull String nodeName) {
+
+        final Set<Object> open = new HashSet<>();
+        for (FlowExecution execution: FlowExecutionList.get()) {
+
+            for (FlowNode head: execution.getCurrentHeads()) {
+
+                if (nodeName.equals(nodeName(head))) {
+
+                    open.add(key(head));
+                }
+
+                for (BlockStartNode start: head.getEnclosingBlocks()) {
+
+                    if (nodeName.equals(nodeName(start))) {
+
+                        open.add(key(start));
+                    }
+                }
+            }
+        }
+
+        return open;
+    }
+
+    /**
+     * Computer the start node of a <code>node</code> step got, null for other nodes.
+     */
+    private static @CheckForNull String nodeName(final @NonNull FlowNode start) {
+
+        if (!(start instanceof StepNode)) return null;
+
+        // The ws step records a workspace too
+        final StepDescriptor descriptor = ((StepNode) start).getDescriptor();
+        if (descriptor == null || !"node".equals(descriptor.getFunctionName())) return null;
+
+        // Only the step start node has it, not the body start node
+        final WorkspaceAction workspace = start.getPersistentAction(WorkspaceAction.class);
+        return workspace == null ? null : workspace.getNode();
+    }
+
+    private static @NonNull Object key(final @NonNull FlowNode start) {
+
+        // Flow nodes can be loaded more than once, their execution is not
+        return Arrays.asList(start.getExecution(), start.getId());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import jakarta.mail.MessagingException;
+
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    private final CircuitBreaker breaker = new CircuitBreaker(3, 1000);
+    private final Exception failure = new MessagingException("Connection refused");
+
+    @Test
+    public void openAfterConsecutiveFailures() throws Exception {
+
+        breaker.acquire(0);
+        breaker.failure(failure, 0);
+        breaker.acquire(0);
+        breaker.failure(failure, 0);
+        breaker.acquire(0);
+        breaker.success();
+
+        breaker.failure(failure, 0);
+        breaker.failure(failure, 0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.failure(failure, 10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        assertRefused(500);
+        assertRefused(1009);
+        assertEquals(2, breaker.getRejected());
+    }
+
+    @Test
+    public void closeAfterSuccessfulProbe() throws Exception {
+
+        open();
+
+        breaker.acquire(1000);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // Single probe at a time
+        assertRefused(1000);
+
+        breaker.success();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.acquire(1001);
+        breaker.acquire(1001);
+    }
+
+    @Test
+    public void probeAgainWhenProbeIsReleased() throws Exception {
+
+        open();
+
+        breaker.acquire(1000);
+        breaker.release();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.acquire(1000);
+        assertRefused(1000);
+    }
+
+    @Test
+    public void reopenAfterFailedProbe() throws Exception {
+
+        open();
+
+        breaker.acquire(1000);
+        breaker.failure(new IOException("Still down"), 1500);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals("java.io.IOException: Still down", breaker.getLastFailure());
+
+        assertRefused(2000);
+        breaker.acquire(2500);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    private void open() {
+
+        for (int i = 0; i < 3; i++) {
+
+            breaker.failure(failure, 0);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private void assertRefused(final long now) {
+
+        try {
+
+            breaker.acquire(now);
+            fail("Circuit should be open");
+        } catch (CircuitBreaker.OpenException expected) {
+            // expected
+        }
+    }
+}
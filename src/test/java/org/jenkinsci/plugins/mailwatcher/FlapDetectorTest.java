@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.jenkinsci.plugins.mailwatcher.FlapDetector.Verdict.FLAPPING;
+import static org.jenkinsci.plugins.mailwatcher.FlapDetector.Verdict.NOTIFY;
+import static org.jenkinsci.plugins.mailwatcher.FlapDetector.Verdict.SUPPRESS;
+
+import hudson.util.FormValidation.Kind;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class FlapDetectorTest {
+
+    private static final long MINUTE = 60_000;
+
+    private final FlapDetector detector = new FlapDetector(() -> 3, () -> 10 * MINUTE);
+
+    @Test
+    public void limitConfiguredTransitions() {
+
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        try {
+
+            config.setFlapTransitions(Integer.MAX_VALUE);
+            assertEquals(MailWatcherConfiguration.MAX_FLAP_TRANSITIONS, config.getFlapTransitions());
+
+            assertEquals(Kind.ERROR, config.doCheckFlapTransitions(MailWatcherConfiguration.MAX_FLAP_TRANSITIONS + 1).kind);
+            assertEquals(Kind.ERROR, config.doCheckFlapTransitions(-1).kind);
+            assertEquals(Kind.OK, config.doCheckFlapTransitions(MailWatcherConfiguration.MAX_FLAP_TRANSITIONS).kind);
+        } finally {
+
+            config.setFlapTransitions(0);
+        }
+    }
+
+    @Test
+    public void reportOccasionalTransitions() {
+
+        assertEquals(NOTIFY, detector.transition("agent", false, 0));
+        assertEquals(NOTIFY, detector.transition("agent", true, 6 * MINUTE));
+        assertEquals(NOTIFY, detector.transition("agent", false, 12 * MINUTE));
+        assertEquals(NOTIFY, detector.transition("agent", true, 18 * MINUTE));
+    }
+
+    @Test
+    public void suppressWhileFlapping() {
+
+        assertEquals(NOTIFY, detector.transition("agent", false, 0));
+        assertEquals(NOTIFY, detector.transition("agent", true, MINUTE));
+        assertEquals(FLAPPING, detector.transition("agent", false, 2 * MINUTE));
+        assertEquals(SUPPRESS, detector.transition("agent", true, 3 * MINUTE));
+        assertEquals(SUPPRESS, detector.transition("agent", false, 20 * MINUTE));
+
+        // Other computers are not affected
+        assertEquals(NOTIFY, detector.transition("other", false, 20 * MINUTE));
+    }
+
+    @Test
+    public void reportStableOnceQuiet() {
+
+        detector.transition("agent", false, 0);
+        detector.transition("agent", true, MINUTE);
+        detector.transition("agent", false, 2 * MINUTE);
+        detector.transition("agent", true, 3 * MINUTE);
+
+        assertTrue(detector.stabilize(12 * MINUTE).isEmpty());
+        assertEquals(Collections.singletonMap("agent", true), detector.stabilize(13 * MINUTE));
+        assertTrue(detector.stabilize(14 * MINUTE).isEmpty());
+
+        assertEquals(NOTIFY, detector.transition("agent", false, 14 * MINUTE));
+    }
+
+    @Test
+    public void forgetQuietComputers() {
+
+        detector.transition("agent", false, 0);
+        detector.transition("other", false, 5 * MINUTE);
+        assertEquals(2, detector.size());
+
+        assertTrue(detector.stabilize(10 * MINUTE).isEmpty());
+        assertEquals(1, detector.size());
+    }
+
+    @Test
+    public void disabled() {
+
+        final FlapDetector disabled = new FlapDetector(() -> 0, () -> 10 * MINUTE);
+
+        for (int i = 0; i < 10; i++) {
+
+            assertEquals(NOTIFY, disabled.transition("agent", i % 2 == 0, i));
+        }
+
+        assertEquals(0, disabled.size());
+    }
+}
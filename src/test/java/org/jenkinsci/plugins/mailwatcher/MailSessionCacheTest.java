@@ -0,0 +1,73 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import hudson.tasks.Mailer;
+
+import jakarta.mail.Session;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class MailSessionCacheTest {
+
+    @Rule public JenkinsRule j = new JenkinsRule();
+
+    private final MailSessionCache cache = new MailSessionCache();
+
+    @Test
+    public void reuseSessionUntilSmtpSettingsChange() {
+
+        final Mailer.DescriptorImpl descriptor = j.jenkins.getDescriptorByType(Mailer.DescriptorImpl.class);
+
+        final Session session = cache.session(descriptor);
+        assertSame(session, cache.session(descriptor));
+
+        descriptor.setReplyToAddress("reply-to@example.com");
+        assertSame(session, cache.session(descriptor));
+
+        descriptor.setSmtpHost("smtp.example.com");
+        final Session updated = cache.session(descriptor);
+        assertNotSame(session, updated);
+        assertEquals("smtp.example.com", updated.getProperty("mail.smtp.host"));
+    }
+
+    @Test
+    public void parseAddressesOnlyWhenChanged() throws AddressException {
+
+        final InternetAddress from = cache.from("admin@example.com");
+        assertSame(from, cache.from("admin@example.com"));
+        assertEquals(new InternetAddress("other@example.com"), cache.from("other@example.com"));
+
+        assertNull(cache.replyTo(null));
+        assertEquals(2, cache.replyTo("a@example.com, b@example.com").length);
+    }
+}
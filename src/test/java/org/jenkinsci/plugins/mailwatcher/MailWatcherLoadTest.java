@@ -0,0 +1,242 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import hudson.model.Computer;
+import hudson.model.FreeStyleProject;
+import hudson.model.User;
+import hudson.slaves.DumbSlave;
+import hudson.slaves.OfflineCause;
+import hudson.tasks.Mailer;
+
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.transform.stream.StreamSource;
+
+import jenkins.model.JenkinsLocationConfiguration;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+/**
+ * Drive thousands of events through the plugin into an SMTP server on localhost.
+ * <p>
+ * Skipped unless run with {@code -DloadTest}. Jobs are updated by submitting their configuration and agents
+ * are disconnected and reconnected for real. Logs throughput, latency from the event to the mail being received
+ * by the server and the time taken by firing the event, Jenkins' own work included. Tune using
+ * {@code -DloadTest.events}, {@code -DloadTest.jobs}, {@code -DloadTest.transitions} and {@code -DloadTest.agents}.
+ */
+public class MailWatcherLoadTest {
+
+    private static final Logger LOGGER = Logger.getLogger(MailWatcherLoadTest.class.getName());
+
+    private static final int EVENTS = Integer.getInteger("loadTest.events", 2000);
+    private static final int JOBS = Integer.getInteger("loadTest.jobs", 50);
+    // Every reconnect launches an agent process
+    private static final int TRANSITIONS = Integer.getInteger("loadTest.transitions", 100);
+    private static final int AGENTS = Integer.getInteger("loadTest.agents", 5);
+    private static final long RECEIVE_SECONDS = 120;
+
+    private static final String RECIPIENT = "watcher@example.com";
+
+    @BeforeClass
+    public static void enabled() {
+
+        Assume.assumeTrue("Run with -DloadTest", Boolean.getBoolean("loadTest"));
+    }
+
+    @Rule public JenkinsRule j = new JenkinsRule();
+
+    private SmtpStub smtp;
+
+    @Before
+    public void setUp() throws Exception {
+
+        smtp = new SmtpStub();
+
+        final Mailer.DescriptorImpl mailer = j.jenkins.getDescriptorByType(Mailer.DescriptorImpl.class);
+        mailer.setSmtpHost("127.0.0.1");
+        mailer.setSmtpPort(String.valueOf(smtp.getPort()));
+        JenkinsLocationConfiguration.get().setAdminAddress("jenkins@example.com");
+
+        // Measure the delivery of every single event
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setDigest(false);
+        config.setDebounceSeconds(0);
+        config.setMailsPerMinute(0);
+        config.setMailsPerRecipientPerMinute(0);
+        config.setFlapTransitions(0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+        smtp.close();
+    }
+
+    @Test
+    public void jobUpdates() throws Exception {
+
+        final List<FreeStyleProject> jobs = new ArrayList<>(JOBS);
+        final Map<FreeStyleProject, String> configs = new HashMap<>();
+        for (int i = 0; i < JOBS; i++) {
+
+            final FreeStyleProject job = j.createFreeStyleProject("job" + i);
+            job.addProperty(new WatcherJobProperty(RECIPIENT));
+            jobs.add(job);
+            configs.put(job, job.getConfigFile().asString());
+        }
+
+        final Events events = new Events(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+
+            final FreeStyleProject job = jobs.get(i % JOBS);
+            // Saved and reported to item listeners as a configuration submitted by a user would be
+            events.fire("mail-watcher-plugin: Job " + job.getFullDisplayName() + " updated", () -> {
+                job.updateByXml(new StreamSource(new StringReader(configs.get(job))));
+            });
+        }
+
+        events.report("Job updates");
+    }
+
+    @Test
+    public void agentTransitions() throws Exception {
+
+        final List<Computer> computers = new ArrayList<>(AGENTS);
+        for (int i = 0; i < AGENTS; i++) {
+
+            final DumbSlave agent = j.createOnlineSlave();
+            // Watched once connected, so the initial connection is not reported
+            agent.getNodeProperties().add(new WatcherNodeProperty(RECIPIENT, RECIPIENT));
+            computers.add(agent.toComputer());
+        }
+
+        final OfflineCause cause = new OfflineCause.UserCause(User.getUnknown(), "load test");
+        final Events events = new Events(TRANSITIONS);
+        for (int i = 0; i < TRANSITIONS; i++) {
+
+            final Computer computer = computers.get(i % AGENTS);
+            if ((i / AGENTS) % 2 == 0) {
+
+                events.fire("mail-watcher-plugin: Computer " + computer.getDisplayName() + " marked offline", () -> {
+                    computer.disconnect(cause).get();
+                });
+            } else {
+
+                events.fire("mail-watcher-plugin: Computer " + computer.getDisplayName() + " marked online", () -> {
+                    computer.connect(true).get();
+                });
+            }
+        }
+
+        events.report("Agent transitions");
+    }
+
+    private interface Event {
+
+        void fire() throws Exception;
+    }
+
+    private final class Events {
+
+        private final Map<String, Deque<Long>> fired = new HashMap<>();
+        private final long[] blocked;
+        private final long start = System.nanoTime();
+        private int count;
+
+        private Events(final int events) {
+
+            blocked = new long[events];
+        }
+
+        private void fire(final String subject, final Event event) throws Exception {
+
+            // Keep within the dispatcher queue so no event is dropped
+            while (NotificationDispatcher.get().pending() >= NotificationDispatcher.QUEUE_DEPTH) {
+
+                Thread.sleep(1);
+            }
+
+            final long firedAt = System.nanoTime();
+            fired.computeIfAbsent(subject, k -> new ArrayDeque<>()).add(firedAt);
+            event.fire();
+            blocked[count++] = System.nanoTime() - firedAt;
+        }
+
+        private void report(final String scenario) throws InterruptedException {
+
+            final long[] latencies = new long[count];
+            long last = start;
+            for (int i = 0; i < count; i++) {
+
+                final SmtpStub.Received mail = smtp.received().poll(RECEIVE_SECONDS, TimeUnit.SECONDS);
+                assertNotNull("Received only " + i + " of " + count + " mails", mail);
+                assertEquals(Arrays.asList("<" + RECIPIENT + ">"), mail.recipients);
+
+                final Deque<Long> pending = fired.get(mail.subject);
+                assertNotNull("Unexpected mail " + mail.subject, pending);
+                latencies[i] = mail.nanos - pending.remove();
+                last = Math.max(last, mail.nanos);
+            }
+            assertNull("Unexpected mail", smtp.received().poll(1, TimeUnit.SECONDS));
+
+            final double seconds = (last - start) / 1e9;
+            LOGGER.log(Level.INFO, String.format(
+                    "%s: %d events in %.2fs, %.1f mails/s%n"
+                            + "  event to delivery: p50 %.2fms, p99 %.2fms, max %.2fms%n"
+                            + "  firing the event: p50 %.3fms, p99 %.3fms, max %.3fms, total %.2fms",
+                    scenario, count, seconds, count / seconds,
+                    millis(latencies, 50), millis(latencies, 99), millis(latencies, 100),
+                    millis(blocked, 50), millis(blocked, 99), millis(blocked, 100), Arrays.stream(blocked).sum() / 1e6
+            ));
+        }
+    }
+
+    private static double millis(final long[] nanos, final int percentile) {
+
+        final long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        final int index = Math.max(0, (int) Math.ceil(sorted.length * percentile / 100D) - 1);
+        return sorted[index] / 1e6;
+    }
+}
@@ -25,16 +25,22 @@ package org.jenkinsci.plugins.mailwatcher;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.CALLS_REAL_METHODS;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import hudson.tasks.Mailer;
 
 import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 
 import jenkins.model.JenkinsLocationConfiguration;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -113,16 +119,151 @@ public class MailWatcherMailerTest {
                 .recipients("")
                 .send(null)
         ;
-        verify(mailer, Mockito.never()).send(Mockito.any(MimeMessage.class));
+        verify(mailer, Mockito.after(500).never()).send(Mockito.any(MimeMessage.class));
     }
 
     @Test
     public void nullRecipients() throws MessagingException {
         builder().subject("Message subject")
-                .recipients(null)
+                .recipients((String) null)
                 .send(null)
         ;
-        verify(mailer, Mockito.never()).send(Mockito.any(MimeMessage.class));
+        verify(mailer, Mockito.after(500).never()).send(Mockito.any(MimeMessage.class));
+    }
+
+    @Test
+    public void queueOnlyRecipientsWithinRateLimit() throws Exception {
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setMailsPerRecipientPerMinute(1);
+        RateLimiter.get().consume(InternetAddress.parse("held@example.org"));
+        Mockito.doThrow(new MessagingException("Relay down")).when(mailer).send(Mockito.any(MimeMessage.class));
+
+        builder().subject("Message subject")
+                .recipients("held@example.org, sent@example.org")
+                .send(null)
+        ;
+
+        final Outbox outbox = Outbox.get();
+        for (int i = 0; i < 50 && outbox.pending() == 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(1, outbox.pending());
+        assertEquals("sent@example.org", outbox.mails().get(0).recipients);
+    }
+
+    @Test
+    public void dropMailRejectedByRelay() throws Exception {
+        Mockito.doThrow(new SendFailedException(
+                "Invalid Addresses", null, null, null, InternetAddress.parse("invalid@example.org")
+        )).when(mailer).send(Mockito.any(MimeMessage.class));
+
+        builder().subject("Message subject")
+                .recipients("invalid@example.org")
+                .send(null)
+        ;
+
+        sentMessage();
+        verify(mailer, Mockito.after(500).times(1)).send(Mockito.any(MimeMessage.class));
+        assertEquals(0, Outbox.get().pending());
+    }
+
+    @Test
+    public void queueMailRefusedForNow() throws Exception {
+        Mockito.doThrow(new SMTPSendFailedException(
+                "RCPT TO", 450, "450 Greylisted", null, null, InternetAddress.parse("later@example.org"), null
+        )).when(mailer).send(Mockito.any(MimeMessage.class));
+
+        builder().subject("Message subject")
+                .recipients("later@example.org")
+                .send(null)
+        ;
+
+        final Outbox outbox = Outbox.get();
+        for (int i = 0; i < 50 && outbox.pending() == 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(1, outbox.pending());
+        assertEquals("later@example.org", outbox.mails().get(0).recipients);
+    }
+
+    @Test
+    public void countRelayUnavailableAsFailure() throws Exception {
+        try (SmtpStub smtp = new SmtpStub()) {
+            mailerDescriptor.setSmtpHost("127.0.0.1");
+            mailerDescriptor.setSmtpPort(String.valueOf(smtp.getPort()));
+            final CircuitBreaker breaker = CircuitBreaker.get();
+            final int failures = breaker.getFailures();
+
+            smtp.refuse("421 Service not available, closing transmission channel");
+            try {
+                mailer.send(mailer.message(InternetAddress.parse("a@example.org"), "subject", "body"));
+                fail();
+            } catch (SMTPSendFailedException expected) {
+                // expected
+            }
+            assertEquals(failures + 1, breaker.getFailures());
+
+            smtp.refuse("550 Requested action not taken: mailbox unavailable");
+            try {
+                mailer.send(mailer.message(InternetAddress.parse("a@example.org"), "subject", "body"));
+                fail();
+            } catch (SMTPSendFailedException expected) {
+                // expected
+            }
+            assertEquals(0, breaker.getFailures());
+        }
+    }
+
+    @Test
+    public void takeNoTokensWhileCircuitIsOpen() throws Exception {
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setMailsPerRecipientPerMinute(1);
+        final CircuitBreaker breaker = CircuitBreaker.get();
+        try {
+            for (int i = 0; i < CircuitBreaker.FAILURES; i++) {
+                breaker.failure(new MessagingException("Relay down"));
+            }
+
+            final MailWatcherNotification notification = new MailWatcherNotification(
+                    builder().subject("Message subject").recipients("open@example.org")
+            ) {};
+            for (int i = 0; i < 2; i++) {
+                try {
+                    mailer.send(notification);
+                    fail();
+                } catch (CircuitBreaker.OpenException expected) {
+                    // expected
+                }
+            }
+            assertNull(RateLimiter.get().held().remove("open@example.org"));
+
+            // The only token is still there once the relay is back
+            breaker.success();
+            RateLimiter.get().acquire(InternetAddress.parse("open@example.org"));
+        } finally {
+            breaker.success();
+        }
+    }
+
+    @Test
+    public void shareMailerAmongListeners() {
+        final MailWatcherMailer shared = MailWatcherMailer.get();
+        assertSame(shared, Whitebox.getInternalState(j.jenkins.getExtensionList(WatcherItemListener.class).get(0), "mailer"));
+        assertSame(shared, Whitebox.getInternalState(j.jenkins.getExtensionList(WatcherComputerListener.class).get(0), "mailer"));
+        assertSame(shared, Whitebox.getInternalState(j.jenkins.getExtensionList(NodeAwailabilityListener.class).get(0), "mailer"));
+    }
+
+    @Test
+    public void refreshRootUrlWhenReconfigured() {
+        final MailWatcherMailer shared = MailWatcherMailer.get();
+        final JenkinsLocationConfiguration location = JenkinsLocationConfiguration.get();
+
+        location.setUrl("http://first.example.com/jenkins/");
+        assertEquals("http://first.example.com/jenkins/", shared.rootUrl());
+        assertEquals("http://first.example.com/jenkins/job/x/", shared.absoluteUrl("job/x/").toString());
+
+        location.setUrl("http://second.example.com/");
+        assertEquals("http://second.example.com/", shared.rootUrl());
     }
 
     private MailWatcherNotification.Builder builder() {
@@ -136,7 +277,7 @@ public class MailWatcherMailerTest {
 
     private MimeMessage sentMessage() throws MessagingException {
         ArgumentCaptor<MimeMessage> captor = ArgumentCaptor.forClass(MimeMessage.class);
-        verify(mailer).send(captor.capture());
+        verify(mailer, timeout(5000)).send(captor.capture());
 
         return captor.getValue();
     }
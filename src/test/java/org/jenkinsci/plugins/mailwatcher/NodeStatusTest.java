@@ -26,19 +26,27 @@ package org.jenkinsci.plugins.mailwatcher;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.endsWith;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import hudson.ExtensionList;
 import hudson.Functions;
 import hudson.Launcher;
 import hudson.model.BuildListener;
 import hudson.model.FreeStyleBuild;
 import hudson.model.AbstractBuild;
 import hudson.model.Computer;
+import hudson.model.Executor;
 import hudson.model.FreeStyleProject;
+import hudson.model.Queue;
 import hudson.model.User;
 import hudson.model.queue.QueueTaskFuture;
 import hudson.security.ACL;
@@ -52,6 +60,10 @@ import hudson.util.OneShotEvent;
 
 import jakarta.mail.MessagingException;
 
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.test.steps.SemaphoreStep;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.Issue;
@@ -59,7 +71,9 @@ import org.jvnet.hudson.test.JenkinsRule;
 import org.mockito.ArgumentCaptor;
 import org.powermock.reflect.Whitebox;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 public class NodeStatusTest {
 
@@ -88,7 +102,7 @@ public class NodeStatusTest {
 
     private void assertNotified(MailWatcherMailer mailer) throws MessagingException {
         ArgumentCaptor<MailWatcherNotification> captor = ArgumentCaptor.forClass(MailWatcherNotification.class);
-        verify(mailer, times(2)).send(captor.capture());
+        verify(mailer, timeout(5000).times(2)).send(captor.capture());
 
         MailWatcherNotification offline = captor.getAllValues().get(0);
         MailWatcherNotification online = captor.getAllValues().get(1);
@@ -139,6 +153,7 @@ public class NodeStatusTest {
 
         started.block();
         slave.toComputer().doToggleOffline("Taking offline so no further builds are scheduled");
+        assertEquals(1, NodeAwailabilityListener.get().occupied(slave.toComputer()));
 
         verify(mailer, never()).send(any(MailWatcherNotification.class));
 
@@ -146,7 +161,8 @@ public class NodeStatusTest {
         future.get();
 
         ArgumentCaptor<MailWatcherNotification> captor = ArgumentCaptor.forClass(MailWatcherNotification.class);
-        verify(mailer).send(captor.capture());
+        verify(mailer, timeout(5000)).send(captor.capture());
+        assertEquals(0, NodeAwailabilityListener.get().occupied(slave.toComputer()));
 
         final MailWatcherNotification notification = captor.getValue();
         assertEquals("a_user@example.com", notification.getRecipients());
@@ -156,6 +172,79 @@ public class NodeStatusTest {
                 "Jenkins computer '" + slave.getDisplayName() + "' you have put offline is no longer occupied",
                 notification.getSubject()
         );
+        Notifications.assertRetainsNoModelObjects(notification);
+    }
+
+    @Test
+    public void notifyWhenPipelineReleasesSlave() throws Exception {
+        MailWatcherMailer mailer = mock(MailWatcherMailer.class);
+        installAwailabilityListener(mailer);
+
+        User user = User.get("a_user", true, Collections.emptyMap());
+        user.addProperty(new Mailer.UserProperty("a_user@example.com"));
+
+        DumbSlave slave = j.createOnlineSlave();
+
+        WorkflowJob project = j.jenkins.createProject(WorkflowJob.class, "a_pipeline");
+        project.setDefinition(new CpsFlowDefinition(
+                "node('" + slave.getNodeName() + "') { semaphore 'occupy' }", true
+        ));
+        WorkflowRun build = project.scheduleBuild2(0).waitForStart();
+        SemaphoreStep.waitForStart("occupy/1", build);
+
+        try (ACLContext aclContext = ACL.as2(user.impersonate2())) {
+            slave.toComputer().doToggleOffline("Taking offline so no further builds are scheduled");
+        }
+        // The node block and the placeholder on the executor
+        assertEquals(2, NodeAwailabilityListener.get().occupied(slave.toComputer()));
+
+        verify(mailer, never()).send(any(MailWatcherNotification.class));
+
+        SemaphoreStep.success("occupy/1", null);
+        j.assertBuildStatusSuccess(j.waitForCompletion(build));
+
+        ArgumentCaptor<MailWatcherNotification> captor = ArgumentCaptor.forClass(MailWatcherNotification.class);
+        verify(mailer, timeout(5000)).send(captor.capture());
+
+        final MailWatcherNotification notification = captor.getValue();
+        assertEquals("a_user@example.com", notification.getRecipients());
+        assertThat(notification.getUrl(), endsWith(slave.toComputer().getUrl()));
+        assertEquals(user, notification.getInitiator());
+    }
+
+    @Test
+    public void notifyOnceWhenPipelineLeavesSlave() throws Exception {
+        MailWatcherMailer mailer = mock(MailWatcherMailer.class);
+        installAwailabilityListener(mailer);
+
+        User user = User.get("a_user", true, Collections.emptyMap());
+        user.addProperty(new Mailer.UserProperty("a_user@example.com"));
+
+        DumbSlave slave = j.createOnlineSlave();
+
+        // Goes on elsewhere after leaving the drained computer
+        WorkflowJob project = j.jenkins.createProject(WorkflowJob.class, "a_pipeline");
+        project.setDefinition(new CpsFlowDefinition(
+                "node('" + slave.getNodeName() + "') { semaphore 'occupy' }\nsemaphore 'after'", true
+        ));
+        WorkflowRun build = project.scheduleBuild2(0).waitForStart();
+        SemaphoreStep.waitForStart("occupy/1", build);
+
+        try (ACLContext aclContext = ACL.as2(user.impersonate2())) {
+            slave.toComputer().doToggleOffline("Taking offline so no further builds are scheduled");
+        }
+        assertEquals(2, NodeAwailabilityListener.get().occupied(slave.toComputer()));
+
+        SemaphoreStep.success("occupy/1", null);
+        SemaphoreStep.waitForStart("after/1", build);
+        SemaphoreStep.success("after/1", null);
+        j.assertBuildStatusSuccess(j.waitForCompletion(build));
+
+        verify(mailer, timeout(5000)).send(any(MailWatcherNotification.class));
+        assertEquals(0, NodeAwailabilityListener.get().occupied(slave.toComputer()));
+
+        // Neither the end of the node block nor the finalized Pipeline report it again
+        verify(mailer, after(500).times(1)).send(any(MailWatcherNotification.class));
     }
 
     @Test @Issue("JENKINS-23496")
@@ -181,12 +270,115 @@ public class NodeStatusTest {
             running.signal();
             future.get();
 
-            verify(mailer, never()).send(any(MailWatcherNotification.class));
+            verify(mailer, after(500).never()).send(any(MailWatcherNotification.class));
         }
     }
 
     private static final class SomeOfflineCause extends OfflineCause {}
 
+    @Test
+    public void trackComputersPutOfflineByUser() throws Exception {
+        DumbSlave slave = j.createOnlineSlave();
+        Computer computer = slave.toComputer();
+
+        computer.setTemporarilyOffline(true, new SomeOfflineCause());
+        assertFalse(NodeAwailabilityListener.get().isDraining(computer));
+        computer.setTemporarilyOffline(false, null);
+
+        computer.doToggleOffline("Draining");
+        assertTrue(NodeAwailabilityListener.get().isDraining(computer));
+
+        computer.doToggleOffline(null);
+        assertFalse(NodeAwailabilityListener.get().isDraining(computer));
+
+        computer.doToggleOffline("Draining");
+        j.jenkins.removeNode(slave);
+        assertFalse(NodeAwailabilityListener.get().isDraining(computer));
+    }
+
+    @Test
+    public void countBuildsCompletedButNotFinalized() throws Exception {
+        final AbstractBuild<?, ?> build = mock(AbstractBuild.class);
+        when(build.isLogUpdated()).thenReturn(false);
+        final Computer computer = computerRunning(build);
+
+        drain(computer);
+
+        assertTrue(NodeAwailabilityListener.get().isDraining(computer));
+        assertEquals(1, NodeAwailabilityListener.get().occupied(computer));
+
+        NodeAwailabilityListener.get().released("drained", build);
+        assertEquals(0, NodeAwailabilityListener.get().occupied(computer));
+    }
+
+    @Test
+    public void releaseBuildsFinalizedWhileDraining() throws Exception {
+        final AbstractBuild<?, ?> build = mock(AbstractBuild.class);
+        final Computer computer = computerRunning(build);
+        // Finalized between the two looks at the executors, not yet gone from the executor
+        when(computer.getAllExecutors().get(0).getCurrentExecutable()).thenReturn(build).thenAnswer(invocation -> {
+            NodeAwailabilityListener.get().released("drained", build);
+            return build;
+        });
+
+        drain(computer);
+
+        assertEquals(0, NodeAwailabilityListener.get().occupied(computer));
+    }
+
+    @Test
+    public void doNotLookAtExecutorsWhileBuildsRemain() throws Exception {
+        final AbstractBuild<?, ?> first = mock(AbstractBuild.class);
+        final AbstractBuild<?, ?> second = mock(AbstractBuild.class);
+        final Computer computer = computerRunning(first, second);
+
+        drain(computer);
+        assertEquals(2, NodeAwailabilityListener.get().occupied(computer));
+
+        NodeAwailabilityListener.get().released("drained", first);
+        assertEquals(1, NodeAwailabilityListener.get().occupied(computer));
+
+        // Only when the occupants were collected
+        verify(computer, times(2)).getAllExecutors();
+    }
+
+    @Test
+    public void releasePlaceholdersOnceGoneFromExecutors() throws Exception {
+        final AbstractBuild<?, ?> build = mock(AbstractBuild.class);
+        final Queue.Executable placeholder = mock(Queue.Executable.class);
+        final Computer computer = computerRunning(build, placeholder);
+
+        drain(computer);
+        assertEquals(2, NodeAwailabilityListener.get().occupied(computer));
+
+        NodeAwailabilityListener.get().released("drained", build);
+        assertEquals(1, NodeAwailabilityListener.get().occupied(computer));
+
+        when(computer.getAllExecutors().get(1).getCurrentExecutable()).thenReturn(null);
+        NodeAwailabilityListener.get().released("drained", build);
+        assertEquals(0, NodeAwailabilityListener.get().occupied(computer));
+    }
+
+    private Computer computerRunning(final Queue.Executable... executables) {
+        final List<Executor> executors = new ArrayList<>();
+        for (Queue.Executable executable: executables) {
+            final Executor executor = mock(Executor.class);
+            when(executor.getCurrentExecutable()).thenReturn(executable);
+            executors.add(executor);
+        }
+
+        final Computer computer = mock(Computer.class);
+        when(computer.getName()).thenReturn("drained");
+        when(computer.getAllExecutors()).thenReturn(executors);
+        return computer;
+    }
+
+    private void drain(final Computer computer) {
+        ExtensionList.lookupSingleton(NodeAwailabilityListener.Draining.class).onTemporarilyOffline(
+                computer, new OfflineCause.UserCause(null, "Draining")
+        );
+    }
+
     @Test @Issue("JENKINS-23496")
     public void doNotNotifySlaveAvailabilityWhenNotAwailable() throws Exception {
         assumeFalse(Functions.isWindows());
@@ -221,7 +413,7 @@ public class NodeStatusTest {
         running.signal();
         future.get();
 
-        verify(mailer, never()).send(any(MailWatcherNotification.class));
+        verify(mailer, after(500).never()).send(any(MailWatcherNotification.class));
     }
 
     private MailWatcherMailer installAwailabilityListener(MailWatcherMailer mailer) {
@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import hudson.ExtensionList;
+import hudson.model.Computer;
+import hudson.model.FreeStyleProject;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import jenkins.model.Jenkins;
+
+import org.jvnet.hudson.test.MockFolder;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Per-event cost of composing and routing notifications.
+ */
+@JmhBenchmark
+public class NotificationBenchmark {
+
+    private static final String RECIPIENTS = "Team <team@example.com>, lead@example.com, qa@example.com, ops@example.com";
+
+    public static class JenkinsState extends JmhBenchmarkState {
+
+        private MailWatcherMailer mailer;
+        private FreeStyleProject job;
+        private MailWatcherNotification notification;
+        private InternetAddress[] addresses;
+
+        private WatcherItemListener itemListener;
+        private WatcherComputerListener computerListener;
+        private FreeStyleProject unwatchedJob;
+        private Computer unwatchedComputer;
+
+        @Override
+        public void setup() throws Exception {
+
+            final Jenkins jenkins = getJenkins();
+            mailer = MailWatcherMailer.get();
+
+            final MockFolder folder = jenkins.createProject(MockFolder.class, "department")
+                    .createProject(MockFolder.class, "team")
+            ;
+            job = folder.createProject(FreeStyleProject.class, "job");
+            job.addProperty(new WatcherJobProperty(RECIPIENTS));
+
+            notification = Notifications.of(Notifications.builder(mailer, jenkins.getRootUrl())
+                    .subject("Job department/team/job updated").body("").recipients(RECIPIENTS)
+                    .url(WatcherItemListener.url(job)).name(job.getFullDisplayName())
+            );
+
+            addresses = notification.recipients().addresses();
+
+            itemListener = ExtensionList.lookupSingleton(WatcherItemListener.class);
+            computerListener = ExtensionList.lookupSingleton(WatcherComputerListener.class);
+            unwatchedJob = folder.createProject(FreeStyleProject.class, "unwatched");
+            unwatchedComputer = jenkins.toComputer();
+        }
+    }
+
+    @Benchmark
+    public String mailBody(final JenkinsState state) {
+
+        return state.notification.getMailBody();
+    }
+
+    @Benchmark
+    public String jobUrl(final JenkinsState state) {
+
+        return WatcherItemListener.url(state.job);
+    }
+
+    /**
+     * Events of unwatched items are expected not to allocate.
+     */
+    @Benchmark
+    public void unwatchedJobUpdated(final JenkinsState state) {
+
+        state.itemListener.onUpdated(state.unwatchedJob);
+    }
+
+    @Benchmark
+    public void unwatchedComputerOnline(final JenkinsState state) {
+
+        state.computerListener.onTemporarilyOnline(state.unwatchedComputer);
+    }
+
+    @Benchmark
+    public InternetAddress[] parseRecipients() throws AddressException {
+
+        return InternetAddress.parse(RECIPIENTS);
+    }
+
+    @Benchmark
+    public InternetAddress[] cachedRecipients(final JenkinsState state) throws AddressException {
+
+        return state.notification.recipients().addresses();
+    }
+
+    @Benchmark
+    public MimeMessage composeMessage(final JenkinsState state) throws MessagingException {
+
+        return state.mailer.message(
+                state.addresses, state.notification.getMailSubject(), state.notification.getMailBody()
+        );
+    }
+}
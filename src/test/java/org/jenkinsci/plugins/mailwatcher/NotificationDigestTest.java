@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Job;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.mail.MessagingException;
+
+import org.jenkinsci.plugins.mailwatcher.jobConfigHistory.ConfigHistory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.powermock.reflect.Whitebox;
+
+public class NotificationDigestTest {
+
+    @Rule public JenkinsRule j = new JenkinsRule();
+
+    private final MailWatcherMailer mailer = mock(MailWatcherMailer.class);
+    private WatcherItemListener listener;
+
+    @Before
+    public void setUp() {
+
+        when(mailer.initiatorId()).thenReturn("someone");
+        when(mailer.configHistory()).thenReturn(mock(ConfigHistory.class));
+
+        listener = new WatcherItemListener(mailer, "http://example.com/jenkins/");
+    }
+
+    @Test
+    public void sendSingleMessagePerRecipient() throws MessagingException {
+
+        MailWatcherConfiguration.get().setDigest(true);
+
+        listener.onUpdated(job("a", "team@example.com, lead@example.com"));
+        listener.onRenamed(job("b", "team@example.com"), "old", "b");
+        listener.onDeleted(job("c", "Team <TEAM@example.com>"));
+
+        verify(mailer, after(500).never()).send(any(MailWatcherNotification.class));
+
+        final NotificationDigest digest = Whitebox.getInternalState(listener, "digest");
+        digest.buffer().flushAll();
+
+        final ArgumentCaptor<MailWatcherNotification> captor = ArgumentCaptor.forClass(MailWatcherNotification.class);
+        verify(mailer, timeout(5000).times(2)).send(captor.capture());
+
+        final Map<String, MailWatcherNotification> sent = new HashMap<>();
+        for (MailWatcherNotification notification: captor.getAllValues()) {
+
+            sent.put(notification.getRecipients(), notification);
+        }
+
+        final MailWatcherNotification team = sent.get("team@example.com");
+        assertEquals("mail-watcher-plugin: 3 job changes", team.getMailSubject());
+        assertThat(team.getMailBody(), containsString("Job a updated"));
+        assertThat(team.getMailBody(), containsString("Job b renamed from old"));
+        assertThat(team.getMailBody(), containsString("Job c deleted"));
+        assertThat(team.getMailBody(), containsString("Initiator: someone"));
+
+        final MailWatcherNotification lead = sent.get("lead@example.com");
+        assertEquals("mail-watcher-plugin: 1 job change", lead.getMailSubject());
+        assertThat(lead.getMailBody(), containsString("http://example.com/jenkins/job/a/"));
+    }
+
+    @Test
+    public void sendRightAwayWhenDisabled() throws MessagingException {
+
+        MailWatcherConfiguration.get().setDigest(false);
+
+        listener.onUpdated(job("a", "team@example.com, lead@example.com"));
+
+        final ArgumentCaptor<MailWatcherNotification> captor = ArgumentCaptor.forClass(MailWatcherNotification.class);
+        verify(mailer, timeout(5000)).send(captor.capture());
+        assertEquals("team@example.com, lead@example.com", captor.getValue().getRecipients());
+    }
+
+    @Test
+    public void retainNoModelObjects() throws Exception {
+
+        MailWatcherConfiguration.get().setDigest(true);
+
+        listener.onUpdated(job("a", "team@example.com"));
+
+        final NotificationDigest digest = Whitebox.getInternalState(listener, "digest");
+        digest.buffer().flushAll();
+
+        final ArgumentCaptor<MailWatcherNotification> captor = ArgumentCaptor.forClass(MailWatcherNotification.class);
+        verify(mailer, timeout(5000)).send(captor.capture());
+        Notifications.assertRetainsNoModelObjects(captor.getValue());
+    }
+
+    @Test
+    public void keepEntriesWithinHeapBudget() throws Exception {
+
+        MailWatcherConfiguration.get().setDigest(true);
+
+        listener.onUpdated(job("a", "team@example.com"));
+        listener.onDeleted(job("b", "team@example.com"));
+
+        final NotificationDigest digest = Whitebox.getInternalState(listener, "digest");
+        final WindowedBuffer.Batch<MailWatcherNotification> entries = digest.buffer().remove("team@example.com");
+        assertEquals(2, entries.events().size());
+        for (MailWatcherNotification entry: entries.events()) {
+
+            Notifications.assertFootprintWithin(entry, Notifications.NOTIFICATION_BUDGET);
+        }
+    }
+
+    @Test
+    public void computePairsOnce() {
+
+        final AtomicInteger computed = new AtomicInteger();
+        final MailWatcherNotification notification = new MailWatcherNotification(
+                Notifications.builder(mailer).type(EventType.JOB_UPDATED).subject("Job a updated").url("job/a/")
+        ) {
+            @Override
+            protected @NonNull Map<String, String> pairs() {
+
+                computed.incrementAndGet();
+                return super.pairs();
+            }
+        };
+
+        // Sent, retried from outbox and listed in a digest
+        notification.getMailSubject();
+        notification.getMailBody();
+        notification.getMailBody();
+        assertEquals("http://example.com/job/a/", notification.getPairs().get("Url"));
+
+        assertEquals(1, computed.get());
+    }
+
+    private Job<?, ?> job(final String name, final String recipients) {
+
+        final Job<?, ?> job = Mockito.mock(Job.class);
+        when(job.getProperty(WatcherJobProperty.class)).thenReturn(new WatcherJobProperty(recipients));
+        when(job.getShortUrl()).thenReturn("job/" + name + "/");
+        when(job.getFullName()).thenReturn(name);
+        when(job.getFullDisplayName()).thenReturn(name);
+        Mockito.doReturn(job).when(mailer).job(name);
+        return job;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.mail.MessagingException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class NotificationDispatcherTest {
+
+    private final MailWatcherMailer mailer = mock(MailWatcherMailer.class);
+    private final CountDownLatch smtp = new CountDownLatch(1);
+    private NotificationDispatcher dispatcher;
+
+    @Before
+    public void setUp() throws MessagingException {
+
+        dispatcher = new NotificationDispatcher(1, 1);
+        when(mailer.send(any(MailWatcherNotification.class))).thenAnswer(invocation -> {
+            smtp.await(10, TimeUnit.SECONDS);
+            return null;
+        });
+    }
+
+    @After
+    public void tearDown() {
+
+        smtp.countDown();
+        dispatcher.drain(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void doNotBlockCallerWhileRelayIsSlow() throws MessagingException {
+
+        assertTrue(dispatcher.dispatch(notification()));
+
+        verify(mailer, timeout(5000)).send(any(MailWatcherNotification.class));
+        smtp.countDown();
+    }
+
+    @Test
+    public void rejectWhenQueueIsFull() throws MessagingException {
+
+        assertTrue(dispatcher.dispatch(notification()));
+        verify(mailer, timeout(5000)).send(any(MailWatcherNotification.class));
+
+        assertTrue(dispatcher.dispatch(notification()));
+        assertFalse(dispatcher.dispatch(notification()));
+    }
+
+    @Test
+    public void drainQueuedNotifications() throws MessagingException {
+
+        dispatcher.dispatch(notification());
+        dispatcher.dispatch(notification());
+
+        smtp.countDown();
+        dispatcher.drain(10, TimeUnit.SECONDS);
+
+        verify(mailer, times(2)).send(any(MailWatcherNotification.class));
+    }
+
+    @Test
+    public void sendSynchronouslyOnceDrained() throws MessagingException {
+
+        smtp.countDown();
+        dispatcher.drain(10, TimeUnit.SECONDS);
+
+        assertTrue(dispatcher.dispatch(notification()));
+        verify(mailer).send(any(MailWatcherNotification.class));
+        assertEquals(0, dispatcher.pending());
+
+        dispatcher.open();
+        assertTrue(dispatcher.dispatch(notification()));
+        verify(mailer, timeout(5000).times(2)).send(any(MailWatcherNotification.class));
+    }
+
+    @Test
+    public void keepOrderOfSameResource() throws MessagingException {
+
+        final NotificationDispatcher lanes = new NotificationDispatcher(4, 100);
+        smtp.countDown();
+
+        for (int i = 0; i < 50; i++) {
+
+            assertTrue(lanes.dispatch(notification("job", Integer.toString(i))));
+        }
+        lanes.drain(10, TimeUnit.SECONDS);
+
+        final ArgumentCaptor<MailWatcherNotification> captor = ArgumentCaptor.forClass(MailWatcherNotification.class);
+        verify(mailer, times(50)).send(captor.capture());
+        for (int i = 0; i < 50; i++) {
+
+            assertEquals(Integer.toString(i), captor.getAllValues().get(i).getSubject());
+        }
+    }
+
+    private MailWatcherNotification notification() {
+
+        return notification(null, "");
+    }
+
+    private MailWatcherNotification notification(final String lane, final String subject) {
+
+        return Notifications.of(Notifications.builder(mailer)
+                .lane(lane).subject(subject).recipients("watcher@example.com")
+        );
+    }
+}
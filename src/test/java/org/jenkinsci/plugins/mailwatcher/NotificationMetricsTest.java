@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+
+import net.sf.json.JSONObject;
+
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.jenkinsci.plugins.mailwatcher.NotificationMetrics.Histogram;
+import org.jenkinsci.plugins.mailwatcher.NotificationMetrics.Outcome;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class NotificationMetricsTest {
+
+    @Rule public JenkinsRule j = new JenkinsRule();
+
+    private final MailWatcherMailer mailer = mock(MailWatcherMailer.class);
+
+    @Test
+    public void countOutcomesPerEventType() throws Exception {
+
+        final NotificationMetrics metrics = NotificationMetrics.get();
+        final long submitted = metrics.count(EventType.NODE_RELEASED, Outcome.SUBMITTED);
+        final long sent = metrics.count(EventType.NODE_RELEASED, Outcome.SENT);
+        final long failed = metrics.count(EventType.NODE_RELEASED, Outcome.FAILED);
+        final long delivered = metrics.delivery().count();
+
+        when(mailer.send(any(MailWatcherNotification.class)))
+                .thenReturn(mock(MimeMessage.class))
+                .thenThrow(new IllegalStateException())
+        ;
+
+        notification().send();
+        notification().send();
+
+        NotificationDispatcher.get().drain(10, TimeUnit.SECONDS);
+        verify(mailer, times(2)).send(any(MailWatcherNotification.class));
+
+        assertEquals(submitted + 2, metrics.count(EventType.NODE_RELEASED, Outcome.SUBMITTED));
+        assertEquals(sent + 1, metrics.count(EventType.NODE_RELEASED, Outcome.SENT));
+        assertEquals(failed + 1, metrics.count(EventType.NODE_RELEASED, Outcome.FAILED));
+        assertEquals(delivered + 1, metrics.delivery().count());
+    }
+
+    @Test
+    public void countQueuedFailureOnce() throws Exception {
+
+        final NotificationMetrics metrics = NotificationMetrics.get();
+        final long failed = metrics.count(EventType.NODE_RELEASED, Outcome.FAILED);
+        final long queued = metrics.count(EventType.NODE_RELEASED, Outcome.QUEUED);
+
+        when(mailer.send(any(MailWatcherNotification.class))).thenThrow(new MessagingException("Relay down"));
+
+        notification().send();
+
+        NotificationDispatcher.get().drain(10, TimeUnit.SECONDS);
+        verify(mailer).send(any(MailWatcherNotification.class));
+
+        assertEquals(queued + 1, metrics.count(EventType.NODE_RELEASED, Outcome.QUEUED));
+        assertEquals(failed, metrics.count(EventType.NODE_RELEASED, Outcome.FAILED));
+    }
+
+    @Test
+    public void queueMailRefusedForNowAndDropRejected() throws Exception {
+
+        final NotificationMetrics metrics = NotificationMetrics.get();
+        final long failed = metrics.count(EventType.NODE_RELEASED, Outcome.FAILED);
+        final long queued = metrics.count(EventType.NODE_RELEASED, Outcome.QUEUED);
+
+        when(mailer.send(any(MailWatcherNotification.class)))
+                .thenThrow(new SMTPSendFailedException("MAIL FROM", 421, "421 Closing channel", null, null, null, null))
+                .thenThrow(new SMTPSendFailedException("DATA", 554, "554 Transaction failed", null, null, null, null))
+        ;
+
+        notification().send();
+        notification().send();
+
+        NotificationDispatcher.get().drain(10, TimeUnit.SECONDS);
+        verify(mailer, times(2)).send(any(MailWatcherNotification.class));
+
+        assertEquals(queued + 1, metrics.count(EventType.NODE_RELEASED, Outcome.QUEUED));
+        assertEquals(failed + 1, metrics.count(EventType.NODE_RELEASED, Outcome.FAILED));
+    }
+
+    @Test
+    public void exposeJson() throws Exception {
+
+        final NotificationMetrics metrics = NotificationMetrics.get();
+        metrics.record(EventType.JOB_DELETED, Outcome.DROPPED);
+        metrics.failure(new MessagingException());
+
+        final JSONObject json = JSONObject.fromObject(
+                j.createWebClient().goTo("mail-watcher-metrics/", "application/json").getWebResponse().getContentAsString()
+        );
+
+        assertEquals(
+                metrics.count(EventType.JOB_DELETED, Outcome.DROPPED),
+                json.getJSONObject("events").getJSONObject("job_deleted").getLong("dropped")
+        );
+        assertEquals(
+                metrics.failures(MessagingException.class),
+                json.getJSONObject("failures").getLong("jakarta.mail.MessagingException")
+        );
+        assertEquals(
+                metrics.smtp().count(),
+                json.getJSONObject("latencyMillis").getJSONObject("smtp").getLong("count")
+        );
+    }
+
+    @Test
+    public void histogramPercentiles() {
+
+        final Histogram histogram = new NotificationMetrics().smtp();
+        assertEquals(-1, histogram.percentile(50));
+
+        for (int i = 0; i < 98; i++) {
+
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(150));
+        histogram.record(TimeUnit.MINUTES.toNanos(5));
+
+        assertEquals(100, histogram.count());
+        assertEquals(5, histogram.percentile(50));
+        assertEquals(5, histogram.percentile(98));
+        assertEquals(200, histogram.percentile(99));
+        assertEquals(-1, histogram.percentile(100));
+    }
+
+    private MailWatcherNotification notification() {
+
+        return Notifications.of(Notifications.builder(mailer)
+                .type(EventType.NODE_RELEASED).recipients("watcher@example.com")
+        );
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import hudson.model.User;
+
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class NotificationTemplateTest {
+
+    @Rule public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void overrideTemplatesPerEventType() throws Exception {
+
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setSubjectTemplate("[jenkins] ${subject}");
+        config.setTemplates(Collections.singletonList(
+                new NotificationTemplate(EventType.JOB_DELETED, "${name} is gone", "Deleted by ${Initiator}")
+        ));
+
+        j.configRoundtrip();
+
+        assertEquals("[jenkins] ${subject}", config.getSubjectTemplate());
+        assertEquals(1, config.getTemplates().size());
+        assertEquals(EventType.JOB_DELETED, config.getTemplates().get(0).getEventType());
+
+        final MailWatcherNotification deleted = notification(EventType.JOB_DELETED);
+        assertEquals("job is gone", deleted.getMailSubject());
+        assertEquals("Deleted by " + deleted.getInitiator().getId(), deleted.getMailBody());
+
+        // Body falls back to the global template
+        final MailWatcherNotification updated = notification(EventType.JOB_UPDATED);
+        assertEquals("[jenkins] Job job updated", updated.getMailSubject());
+        assertEquals(
+                String.format("Url: http://example.com/job/job/%nInitiator: %s%n\n\n", updated.getInitiator().getId()),
+                updated.getMailBody()
+        );
+    }
+
+    @Test
+    public void blankTemplatesFallBackToDefaults() {
+
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setSubjectTemplate(" ");
+        config.setBodyTemplate("");
+
+        assertEquals(MailWatcherConfiguration.DEFAULT_SUBJECT_TEMPLATE, config.getSubjectTemplate());
+        assertEquals(MailWatcherConfiguration.DEFAULT_BODY_TEMPLATE, config.getBodyTemplate());
+    }
+
+    private MailWatcherNotification notification(final EventType type) {
+
+        final MailWatcherMailer mailer = mock(MailWatcherMailer.class);
+        return Notifications.of(Notifications.builder(mailer)
+                .type(type).subject("Job job " + (type == EventType.JOB_DELETED ? "deleted" : "updated"))
+                .url("job/job/").name("job").initiator(User.getUnknown())
+        );
+    }
+}
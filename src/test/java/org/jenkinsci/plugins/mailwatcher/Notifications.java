@@ -0,0 +1,263 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Computer;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.ModelObject;
+import hudson.model.Run;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Notifications composed by tests directly rather than by a listener.
+ */
+/*package*/ final class Notifications {
+
+    /*package*/ static final String ROOT_URL = "http://example.com/";
+
+    private static final List<Class<?>> MODEL_TYPES = Arrays.asList(
+            Job.class, Computer.class, Run.class, Item.class, ModelObject.class
+    );
+
+    /**
+     * Heap a notification waiting in a queue, buffer or digest can take, including its strings.
+     */
+    /*package*/ static final long NOTIFICATION_BUDGET = 1536;
+
+    /**
+     * Heap a notification held back by the rate limit can take until summarized.
+     */
+    /*package*/ static final long HELD_BUDGET = 512;
+
+    // Object layout of a 64-bit JVM with compressed references
+    private static final long HEADER = 12;
+    private static final long ARRAY_HEADER = 16;
+    private static final long REFERENCE = 4;
+    private static final long MAP_ENTRY = 40;
+
+    private Notifications() {}
+
+    /**
+     * Builder sending the notification it is composing.
+     */
+    /*package*/ static @NonNull MailWatcherNotification.Builder builder(
+            final @NonNull MailWatcherMailer mailer, final String jenkinsRootUrl
+    ) {
+
+        return new MailWatcherNotification.Builder(mailer, jenkinsRootUrl) {
+            @Override
+            public void send(final Object object) {
+
+                of(this).send();
+            }
+        };
+    }
+
+    /*package*/ static @NonNull MailWatcherNotification.Builder builder(final @NonNull MailWatcherMailer mailer) {
+
+        return builder(mailer, ROOT_URL);
+    }
+
+    /*package*/ static @NonNull MailWatcherNotification of(final @NonNull MailWatcherNotification.Builder builder) {
+
+        return new MailWatcherNotification(builder) {};
+    }
+
+    /*package*/ static @NonNull MailWatcherNotification of(
+            final @NonNull MailWatcherMailer mailer, final String subject, final String body, final String recipients
+    ) {
+
+        return of(builder(mailer).subject(subject).body(body).recipients(recipients));
+    }
+
+    /**
+     * Objects the notification, or other queued event, keeps reachable, except for the shared mailer.
+     * <p>
+     * Arrays, collections, maps and objects of classes outside of the JDK are followed. Other objects, enum constants
+     * and model objects are reported as they are.
+     */
+    /*package*/ static @NonNull List<Object> retained(final @NonNull Object queued) throws IllegalAccessException {
+
+        final List<Object> retained = new ArrayList<>();
+        final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Deque<Object> pending = new ArrayDeque<>();
+        pending.add(queued);
+
+        Object object;
+        while ((object = pending.poll()) != null) {
+
+            if (object instanceof MailWatcherMailer || !visited.add(object)) continue;
+            retained.add(object);
+
+            if (object instanceof Object[] array) {
+
+                follow(pending, Arrays.asList(array));
+            } else if (object instanceof Collection<?> collection) {
+
+                follow(pending, collection);
+            } else if (object instanceof Map<?, ?> map) {
+
+                follow(pending, map.keySet());
+                follow(pending, map.values());
+            } else if (!jdk(object.getClass()) && !model(object) && !(object instanceof Enum)) {
+
+                for (Class<?> type = object.getClass(); type != Object.class; type = type.getSuperclass()) {
+
+                    for (Field field: type.getDeclaredFields()) {
+
+                        if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) continue;
+
+                        field.setAccessible(true);
+                        follow(pending, Collections.singleton(field.get(object)));
+                    }
+                }
+            }
+        }
+
+        return retained;
+    }
+
+    /**
+     * Estimated heap taken by the objects the queued event keeps reachable.
+     * <p>
+     * Objects are laid out as on a 64-bit JVM with compressed references. Strings include their characters,
+     * collections and maps their tables and entries. Enum constants are shared so they are not counted.
+     */
+    /*package*/ static long footprint(final @NonNull Object queued) throws IllegalAccessException {
+
+        long bytes = 0;
+        for (Object retained: retained(queued)) {
+
+            if (retained instanceof Enum) continue;
+
+            bytes += shallowSize(retained);
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Fail if the queued event takes more heap than it is given.
+     */
+    /*package*/ static void assertFootprintWithin(final @NonNull Object queued, final long budget) throws IllegalAccessException {
+
+        final long footprint = footprint(queued);
+        assertTrue(queued + " takes " + footprint + " bytes, more than " + budget, footprint <= budget);
+    }
+
+    /**
+     * Fail if the notification keeps any job, computer, build, item or other model object reachable.
+     */
+    /*package*/ static void assertRetainsNoModelObjects(
+            final @NonNull MailWatcherNotification notification
+    ) throws IllegalAccessException {
+
+        for (Object retained: retained(notification)) {
+
+            assertFalse(notification + " retains " + retained, model(retained));
+        }
+    }
+
+    private static boolean jdk(final @NonNull Class<?> type) {
+
+        final String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.") || name.startsWith("sun.");
+    }
+
+    private static boolean model(final @NonNull Object object) {
+
+        return MODEL_TYPES.stream().anyMatch(type -> type.isInstance(object));
+    }
+
+    private static long shallowSize(final @NonNull Object object) {
+
+        final Class<?> type = object.getClass();
+        if (type.isArray()) {
+
+            final Class<?> component = type.getComponentType();
+            return align(ARRAY_HEADER + (long) Array.getLength(object) * size(component));
+        }
+
+        long size = HEADER;
+        for (Class<?> t = type; t != null; t = t.getSuperclass()) {
+
+            for (Field field: t.getDeclaredFields()) {
+
+                if (!Modifier.isStatic(field.getModifiers())) size += size(field.getType());
+            }
+        }
+        size = align(size);
+
+        if (object instanceof String string) {
+
+            final boolean latin1 = string.chars().allMatch(c -> c < 256);
+            size += align(ARRAY_HEADER + (long) string.length() * (latin1 ? 1 : 2));
+        } else if (object instanceof Collection<?> collection) {
+
+            size += align(ARRAY_HEADER + (long) collection.size() * REFERENCE);
+        } else if (object instanceof Map<?, ?> map) {
+
+            size += align(ARRAY_HEADER + 2L * map.size() * REFERENCE) + (long) map.size() * MAP_ENTRY;
+        }
+
+        return size;
+    }
+
+    private static long size(final @NonNull Class<?> type) {
+
+        if (!type.isPrimitive()) return REFERENCE;
+        if (type == long.class || type == double.class) return 8;
+        if (type == int.class || type == float.class) return 4;
+        if (type == short.class || type == char.class) return 2;
+        return 1;
+    }
+
+    private static long align(final long size) {
+
+        return (size + 7) & ~7L;
+    }
+
+    private static void follow(final @NonNull Deque<Object> pending, final @NonNull Collection<?> objects) {
+
+        objects.stream().filter(Objects::nonNull).forEach(pending::add);
+    }
+}
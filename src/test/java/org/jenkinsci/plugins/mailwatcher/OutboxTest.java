@@ -0,0 +1,352 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.powermock.reflect.Whitebox;
+
+public class OutboxTest {
+
+    private static final long HOUR = 3600_000;
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final List<String> sent = new ArrayList<>();
+    private boolean relayDown;
+    private String rejected;
+    private String undeliverable;
+    private String greylisted;
+    private boolean refusedRecipients;
+    private boolean limited;
+    private final List<Outbox> opened = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+
+        opened.forEach(Outbox::close);
+    }
+
+    @Test
+    public void deliverAfterRestart() throws IOException {
+
+        relayDown = true;
+        final Outbox outbox = outbox(1024 * 1024);
+        assertTrue(outbox.enqueue("a@example.com", "first", "body"));
+        assertTrue(outbox.enqueue("b@example.com", "second", "body"));
+
+        outbox.retry(outbox.nextAttempt());
+        assertEquals(2, outbox.pending());
+        outbox.close();
+
+        relayDown = false;
+        final Outbox restarted = outbox(1024 * 1024);
+        restarted.start();
+        assertEquals(2, restarted.pending());
+
+        restarted.retry();
+        assertEquals(0, restarted.pending());
+        assertEquals(List.of("a@example.com: first", "b@example.com: second"), sent);
+        restarted.close();
+
+        final Outbox again = outbox(1024 * 1024);
+        again.start();
+        assertEquals(0, again.pending());
+    }
+
+    @Test
+    public void onlyJournalMailQueuedAfterShutdown() throws IOException {
+
+        final Outbox outbox = outbox(1024 * 1024);
+        outbox.close();
+
+        assertTrue(outbox.enqueue("a@example.com", "late", "body"));
+        assertNull(Whitebox.getInternalState(outbox, "executor"));
+        assertEquals(0, outbox.pending());
+
+        final Outbox restarted = outbox(1024 * 1024);
+        restarted.start();
+        assertEquals(1, restarted.pending());
+
+        restarted.retry();
+        assertEquals(List.of("a@example.com: late"), sent);
+    }
+
+    @Test
+    public void ignoreTornRecord() throws IOException {
+
+        relayDown = true;
+        final Outbox outbox = outbox(1024 * 1024);
+        outbox.enqueue("a@example.com", "first", "body");
+        outbox.close();
+
+        final File[] segments = tmp.getRoot().listFiles();
+        assertEquals(1, segments.length);
+        try (FileOutputStream out = new FileOutputStream(segments[0], true)) {
+
+            // Length and part of checksum of record interrupted by crash
+            out.write(new byte[] {0, 0, 0, 42, 17, 3});
+        }
+
+        final Outbox restarted = outbox(1024 * 1024);
+        restarted.start();
+        assertEquals(1, restarted.pending());
+
+        relayDown = false;
+        restarted.retry();
+        assertEquals(List.of("a@example.com: first"), sent);
+    }
+
+    @Test
+    public void ignoreCorruptedRecord() throws IOException {
+
+        relayDown = true;
+        final Outbox outbox = outbox(1024 * 1024);
+        outbox.enqueue("a@example.com", "first", "body");
+        outbox.close();
+
+        final File segment = tmp.getRoot().listFiles()[0];
+        final byte[] content = Files.readAllBytes(segment.toPath());
+        content[content.length - 1] ^= 1;
+        Files.write(segment.toPath(), content);
+
+        final Outbox restarted = outbox(1024 * 1024);
+        restarted.start();
+        assertEquals(0, restarted.pending());
+    }
+
+    @Test
+    public void compactDeliveredMails() throws IOException {
+
+        final Outbox outbox = outbox(256);
+        for (int i = 0; i < 20; i++) {
+
+            outbox.enqueue("a@example.com", "mail " + i, "body");
+        }
+
+        rejected = "mail 15";
+        outbox.retry(outbox.nextAttempt());
+        assertEquals(15, sent.size());
+        assertEquals(5, outbox.pending());
+        assertEquals(1, tmp.getRoot().listFiles().length);
+        assertTrue(tmp.getRoot().listFiles()[0].length() < 1024);
+        outbox.close();
+
+        rejected = null;
+        final Outbox restarted = outbox(256);
+        restarted.start();
+        assertEquals(5, restarted.pending());
+
+        sent.clear();
+        restarted.retry();
+        assertEquals(List.of(
+                "a@example.com: mail 15", "a@example.com: mail 16", "a@example.com: mail 17",
+                "a@example.com: mail 18", "a@example.com: mail 19"
+        ), sent);
+    }
+
+    @Test
+    public void backOffExponentially() {
+
+        relayDown = true;
+        final Outbox outbox = new Outbox(tmp.getRoot(), this::send, 10, 1024, 1000, 5000, 100);
+        opened.add(outbox);
+        outbox.enqueue("a@example.com", "first", "body");
+
+        final long start = outbox.nextAttempt();
+        outbox.retry(start - 1);
+        assertEquals(start, outbox.nextAttempt());
+
+        outbox.retry(start);
+        assertEquals(start + 1000, outbox.nextAttempt());
+        outbox.retry(start + 1000);
+        assertEquals(start + 3000, outbox.nextAttempt());
+        outbox.retry(start + 3000);
+        assertEquals(start + 7000, outbox.nextAttempt());
+        outbox.retry(start + 7000);
+        assertEquals(start + 12000, outbox.nextAttempt());
+
+        relayDown = false;
+        outbox.retry(start + 12000);
+        assertEquals(0, outbox.pending());
+    }
+
+    @Test
+    public void giveUpEventually() {
+
+        relayDown = true;
+        final Outbox outbox = new Outbox(tmp.getRoot(), this::send, 10, 1024, HOUR, HOUR, 2);
+        opened.add(outbox);
+        outbox.enqueue("a@example.com", "first", "body");
+
+        outbox.retry(outbox.nextAttempt());
+        assertEquals(1, outbox.pending());
+        outbox.retry(outbox.nextAttempt());
+        assertEquals(0, outbox.pending());
+    }
+
+    @Test
+    public void dropUndeliverableMail() {
+
+        final Outbox outbox = new Outbox(tmp.getRoot(), this::send, 10, 1024, 1000, HOUR, 100);
+        opened.add(outbox);
+        outbox.enqueue("a@example.com", "first", "body");
+        outbox.enqueue("b@example.com", "second", "body");
+
+        undeliverable = "first";
+        final long start = outbox.nextAttempt();
+        outbox.retry(start + 1000);
+        assertEquals(List.of("b@example.com: second"), sent);
+        assertEquals(0, outbox.pending());
+        assertEquals(Long.MAX_VALUE, outbox.nextAttempt());
+    }
+
+    @Test
+    public void retryMailRefusedForNow() {
+
+        final Outbox outbox = new Outbox(tmp.getRoot(), this::send, 10, 1024, 1000, HOUR, 100);
+        opened.add(outbox);
+        outbox.enqueue("a@example.com", "first", "body");
+        outbox.enqueue("b@example.com", "second", "body");
+
+        greylisted = "first";
+        final long start = outbox.nextAttempt();
+        outbox.retry(start + 1000);
+        assertEquals(List.of(), sent);
+        assertEquals(2, outbox.pending());
+        assertEquals(start + 2000, outbox.nextAttempt());
+
+        greylisted = null;
+        outbox.retry(start + 2000);
+        assertEquals(List.of("a@example.com: first", "b@example.com: second"), sent);
+        assertEquals(0, outbox.pending());
+    }
+
+    @Test
+    public void dropMailWithAllRecipientsRefused() {
+
+        final Outbox outbox = new Outbox(tmp.getRoot(), this::send, 10, 1024, 1000, HOUR, 100);
+        opened.add(outbox);
+        outbox.enqueue("a@example.com", "first", "body");
+
+        final long start = outbox.nextAttempt();
+        refusedRecipients = true;
+        outbox.retry(start + 1000);
+        assertEquals(0, outbox.pending());
+    }
+
+    @Test
+    public void deferOthersWhenRelayFails() {
+
+        final Outbox outbox = new Outbox(tmp.getRoot(), this::send, 10, 1024, 1000, HOUR, 100);
+        opened.add(outbox);
+        outbox.enqueue("a@example.com", "first", "body");
+        outbox.enqueue("b@example.com", "second", "body");
+
+        relayDown = true;
+        final long start = outbox.nextAttempt();
+        outbox.retry(start + 1000);
+        assertEquals(start + 2000, outbox.nextAttempt());
+
+        relayDown = false;
+        outbox.retry(start + 1999);
+        assertEquals(2, outbox.pending());
+        outbox.retry(start + 2000);
+        assertEquals(List.of("a@example.com: first", "b@example.com: second"), sent);
+    }
+
+    @Test
+    public void stopWhenRateLimitIsExceeded() {
+
+        final Outbox outbox = new Outbox(tmp.getRoot(), this::send, 10, 1024, 1000, HOUR, 1);
+        opened.add(outbox);
+        outbox.enqueue("a@example.com", "first", "body");
+        outbox.enqueue("b@example.com", "second", "body");
+
+        limited = true;
+        final long start = outbox.nextAttempt();
+        outbox.retry(start + 1000);
+        assertEquals(2, outbox.pending());
+        assertEquals(start + 2000, outbox.nextAttempt());
+
+        // Not counted as a failed attempt
+        limited = false;
+        outbox.retry(start + 2000);
+        assertEquals(List.of("a@example.com: first", "b@example.com: second"), sent);
+    }
+
+    @Test
+    public void rejectWhenFull() {
+
+        final Outbox outbox = new Outbox(tmp.getRoot(), this::send, 1, 1024, HOUR, HOUR, 2);
+        opened.add(outbox);
+
+        assertTrue(outbox.enqueue("a@example.com", "first", "body"));
+        assertFalse(outbox.enqueue("a@example.com", "second", "body"));
+    }
+
+    private Outbox outbox(final long maxSegmentBytes) {
+
+        final Outbox outbox = new Outbox(tmp.getRoot(), this::send, 100, maxSegmentBytes, HOUR, HOUR, 100);
+        opened.add(outbox);
+        return outbox;
+    }
+
+    private void send(final Outbox.Mail mail) throws MessagingException {
+
+        if (relayDown) throw new MessagingException("Relay down");
+        if (limited) throw new RateLimiter.ExceededException(true);
+        if (mail.subject.equals(rejected)) throw new MessagingException("Rejected");
+        if (mail.subject.equals(undeliverable)) throw new SMTPSendFailedException(
+                "RCPT TO", 550, "550 No such user", null, null, null, InternetAddress.parse(mail.recipients)
+        );
+        if (refusedRecipients) throw new SendFailedException(
+                "Invalid Addresses", null, null, null, InternetAddress.parse(mail.recipients)
+        );
+        if (mail.subject.equals(greylisted)) throw new SMTPSendFailedException(
+                "RCPT TO", 450, "450 Greylisted, try again later", null, null, InternetAddress.parse(mail.recipients), null
+        );
+
+        sent.add(mail.recipients + ": " + mail.subject);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.jenkinsci.plugins.mailwatcher.MailWatcherNotification.NEWLINE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.List;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class RateLimiterTest {
+
+    private static final long MINUTE = 60_000;
+
+    private final MailWatcherMailer mailer = mock(MailWatcherMailer.class);
+    private final RateLimiter limiter = new RateLimiter(() -> 5, () -> 2);
+
+    @Test
+    public void limitPerRecipient() throws AddressException {
+
+        final InternetAddress[] both = InternetAddress.parse("a@example.com, b@example.com");
+        final InternetAddress[] a = InternetAddress.parse("A@example.com");
+
+        assertEquals(2, limiter.permit(notification("1"), both, 0).length);
+        assertEquals(1, limiter.permit(notification("2"), a, 0).length);
+        assertEquals(
+                Arrays.asList(InternetAddress.parse("b@example.com")),
+                Arrays.asList(limiter.permit(notification("3"), both, 0))
+        );
+        assertEquals(1, limiter.held().size());
+
+        // Replenished at the rate per minute
+        assertEquals(0, limiter.permit(notification("4"), a, MINUTE / 4).length);
+        assertEquals(1, limiter.permit(notification("5"), a, MINUTE / 2).length);
+    }
+
+    @Test
+    public void limitGlobally() throws AddressException {
+
+        for (int i = 0; i < 5; i++) {
+
+            assertEquals(1, limiter.permit(notification("" + i), InternetAddress.parse("r" + i + "@example.com"), 0).length);
+        }
+
+        assertEquals(0, limiter.permit(notification("5"), InternetAddress.parse("other@example.com"), 0).length);
+        assertEquals(1, limiter.permit(notification("6"), InternetAddress.parse("other@example.com"), MINUTE / 5).length);
+    }
+
+    @Test
+    public void doNotLimitWhenDisabled() throws AddressException {
+
+        final RateLimiter unlimited = new RateLimiter(() -> 0, () -> 0);
+        for (int i = 0; i < 100; i++) {
+
+            assertEquals(1, unlimited.permit(notification("" + i), InternetAddress.parse("a@example.com"), 0).length);
+        }
+    }
+
+    @Test
+    public void trackNoRecipientsWhenRecipientLimitDisabled() throws Exception {
+
+        final RateLimiter unlimited = new RateLimiter(() -> 5, () -> 0);
+        for (int i = 0; i < 3; i++) {
+
+            unlimited.permit(notification("" + i), InternetAddress.parse("a" + i + "@example.com"), 0);
+            unlimited.acquire(InternetAddress.parse("b" + i + "@example.com"), 0);
+        }
+        assertEquals(0, unlimited.tracked());
+    }
+
+    @Test
+    public void acquireForAllRecipientsOrNone() throws Exception {
+
+        final InternetAddress[] both = InternetAddress.parse("b@example.com, a@example.com");
+        final InternetAddress[] a = InternetAddress.parse("a@example.com");
+        final InternetAddress[] b = InternetAddress.parse("b@example.com");
+
+        limiter.acquire(a, 0);
+        limiter.acquire(a, 0);
+        try {
+
+            limiter.acquire(both, 0);
+            fail();
+        } catch (RateLimiter.ExceededException ex) {
+
+            assertFalse(ex.isGlobal());
+        }
+
+        // Tokens of b were returned
+        limiter.acquire(b, 0);
+        limiter.acquire(b, 0);
+        limiter.acquire(InternetAddress.parse("c@example.com"), 0);
+        try {
+
+            limiter.acquire(InternetAddress.parse("d@example.com"), 0);
+            fail();
+        } catch (RateLimiter.ExceededException ex) {
+
+            assertTrue(ex.isGlobal());
+        }
+    }
+
+    @Test
+    public void summarizeHeldBackNotifications() throws Exception {
+
+        final InternetAddress[] a = InternetAddress.parse("a@example.com");
+        for (int i = 0; i < 4; i++) {
+
+            limiter.permit(notification("Job " + i + " updated"), a, 0);
+        }
+
+        limiter.held().flushAll();
+
+        final ArgumentCaptor<MailWatcherNotification> captor = ArgumentCaptor.forClass(MailWatcherNotification.class);
+        verify(mailer, timeout(5000)).send(captor.capture());
+
+        final MailWatcherNotification summary = captor.getValue();
+        assertEquals("a@example.com", summary.getRecipients());
+        assertEquals("mail-watcher-plugin: 2 notifications held back", summary.getMailSubject());
+        assertThat(summary.getMailBody(), containsString("Job 2 updated" + NEWLINE + "Job 3 updated" + NEWLINE));
+        assertThat(summary.getMailBody(), containsString("Url: http://example.com/"));
+    }
+
+    @Test
+    public void countHeldBackNotificationsOverLimit() throws Exception {
+
+        final InternetAddress[] a = InternetAddress.parse("a@example.com");
+        for (int i = 0; i < RateLimiter.MAX_HELD + 10; i++) {
+
+            limiter.permit(notification("Job " + i + " updated"), a, 0);
+        }
+
+        limiter.held().flushAll();
+
+        final ArgumentCaptor<MailWatcherNotification> captor = ArgumentCaptor.forClass(MailWatcherNotification.class);
+        verify(mailer, timeout(5000)).send(captor.capture());
+
+        final MailWatcherNotification summary = captor.getValue();
+        assertEquals("mail-watcher-plugin: " + (RateLimiter.MAX_HELD + 8) + " notifications held back", summary.getMailSubject());
+        assertThat(summary.getMailBody(), containsString("Job 2 updated" + NEWLINE));
+        assertThat(summary.getMailBody(), containsString("... and 8 more" + NEWLINE));
+    }
+
+    @Test
+    public void retainNoModelObjects() throws Exception {
+
+        final InternetAddress[] a = InternetAddress.parse("a@example.com");
+        for (int i = 0; i < 4; i++) {
+
+            limiter.permit(notification("Job " + i + " updated"), a, 0);
+        }
+
+        limiter.held().flushAll();
+
+        final ArgumentCaptor<MailWatcherNotification> captor = ArgumentCaptor.forClass(MailWatcherNotification.class);
+        verify(mailer, timeout(5000)).send(captor.capture());
+        Notifications.assertRetainsNoModelObjects(captor.getValue());
+    }
+
+    @Test
+    public void keepHeldBackWithinHeapBudget() throws Exception {
+
+        final InternetAddress[] a = InternetAddress.parse("a@example.com");
+        for (int i = 0; i < 4; i++) {
+
+            limiter.permit(notification("Job " + i + " updated"), a, 0);
+        }
+
+        final WindowedBuffer.Batch<RateLimiter.Held> held = limiter.held().remove("a@example.com");
+        assertEquals(2, held.events().size());
+        for (RateLimiter.Held entry: held.events()) {
+
+            Notifications.assertFootprintWithin(entry, Notifications.HELD_BUDGET);
+        }
+    }
+
+    private MailWatcherNotification notification(final String subject) {
+
+        return Notifications.of(mailer, subject, "", "a@example.com");
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+
+import org.junit.Test;
+
+public class RecipientsTest {
+
+    private static final String LIST = "team <team@example.com>, lead@example.com";
+
+    @Test
+    public void shareInstanceForSameAddresses() {
+
+        assertSame(Recipients.of(new String(LIST)), Recipients.of(new String(LIST)));
+    }
+
+    @Test
+    public void shareAddressesBetweenProperties() {
+
+        final WatcherJobProperty job = new WatcherJobProperty(new String(LIST));
+        final WatcherNodeProperty node = new WatcherNodeProperty(new String(LIST), new String(LIST));
+
+        assertSame(job.getWatcherAddresses(), node.getOnlineAddresses());
+        assertSame(job.getWatcherAddresses(), node.getOfflineAddresses());
+        assertSame(job.getWatcherRecipients(), node.getOfflineRecipients());
+    }
+
+    @Test
+    public void parse() throws AddressException {
+
+        final InternetAddress[] addresses = Recipients.of(LIST).addresses();
+
+        assertArrayEquals(InternetAddress.parse(LIST), addresses);
+
+        // Callers can not corrupt the shared copy
+        addresses[0] = null;
+        assertEquals(new InternetAddress("team <team@example.com>"), Recipients.of(LIST).addresses()[0]);
+    }
+
+    @Test
+    public void noAddresses() {
+
+        assertNull(Recipients.of(null));
+        assertNull(Recipients.of(""));
+        assertNull(Recipients.of(" \t"));
+    }
+
+    @Test(expected = AddressException.class)
+    public void invalidAddresses() throws AddressException {
+
+        Recipients.of("ASDF@#$%^&*()").addresses();
+    }
+}
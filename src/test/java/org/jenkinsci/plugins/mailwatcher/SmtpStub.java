@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Minimal SMTP server accepting all mail on localhost, unless told to refuse it.
+ */
+/*package*/ final class SmtpStub implements Closeable {
+
+    private final ServerSocket server;
+    private final BlockingQueue<Received> received = new LinkedBlockingQueue<>();
+    private final List<Socket> connections = new ArrayList<>();
+    // Reply to MAIL FROM refusing the mail, accepted when null
+    private volatile String refusal;
+
+    /*package*/ SmtpStub() throws IOException {
+
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+        final Thread acceptor = new Thread(this::accept, "SMTP stub acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /*package*/ int getPort() {
+
+        return server.getLocalPort();
+    }
+
+    /*package*/ BlockingQueue<Received> received() {
+
+        return received;
+    }
+
+    /*package*/ void refuse(final String reply) {
+
+        refusal = reply;
+    }
+
+    private void accept() {
+
+        while (!server.isClosed()) {
+
+            try {
+
+                final Socket socket = server.accept();
+                synchronized (connections) {
+
+                    connections.add(socket);
+                }
+
+                final Thread handler = new Thread(() -> serve(socket), "SMTP stub connection " + socket.getPort());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException ex) {
+
+                // Closed
+            }
+        }
+    }
+
+    private void serve(final Socket socket) {
+
+        try (
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)
+        ) {
+
+            reply(out, "220 localhost SMTP stub");
+
+            List<String> recipients = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+
+                final String command = line.length() < 4 ? line.toUpperCase() : line.substring(0, 4).toUpperCase();
+                switch (command) {
+                    case "EHLO":
+                    case "HELO":
+                        reply(out, "250 localhost");
+                        break;
+                    case "MAIL":
+                        recipients = new ArrayList<>();
+                        final String refusal = this.refusal;
+                        reply(out, refusal == null ? "250 OK" : refusal);
+                        break;
+                    case "RCPT":
+                        recipients.add(line.substring(line.indexOf(':') + 1).trim());
+                        reply(out, "250 OK");
+                        break;
+                    case "DATA":
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        received.add(new Received(System.nanoTime(), subject(in), recipients));
+                        reply(out, "250 OK");
+                        break;
+                    case "QUIT":
+                        reply(out, "221 Bye");
+                        return;
+                    default:
+                        // RSET, NOOP
+                        reply(out, "250 OK");
+                }
+            }
+        } catch (IOException ex) {
+
+            // Connection closed
+        }
+    }
+
+    private static String subject(final BufferedReader in) throws IOException {
+
+        final List<String> headers = new ArrayList<>();
+        boolean body = false;
+        String line;
+        while ((line = in.readLine()) != null && !line.equals(".")) {
+
+            if (body) continue;
+
+            if (line.isEmpty()) {
+
+                body = true;
+            } else if ((line.startsWith(" ") || line.startsWith("\t")) && !headers.isEmpty()) {
+
+                // Unfold
+                headers.set(headers.size() - 1, headers.get(headers.size() - 1) + line);
+            } else {
+
+                headers.add(line);
+            }
+        }
+
+        for (String header: headers) {
+
+            if (header.startsWith("Subject: ")) return header.substring("Subject: ".length());
+        }
+
+        return null;
+    }
+
+    private static void reply(final Writer out, final String reply) throws IOException {
+
+        out.write(reply + "\r\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        server.close();
+        synchronized (connections) {
+
+            for (Socket socket: connections) {
+
+                socket.close();
+            }
+        }
+    }
+
+    /*package*/ static final class Received {
+
+        /*package*/ final long nanos;
+        /*package*/ final String subject;
+        /*package*/ final List<String> recipients;
+
+        private Received(final long nanos, final String subject, final List<String> recipients) {
+
+            this.nanos = nanos;
+            this.subject = subject;
+            this.recipients = recipients;
+        }
+    }
+}
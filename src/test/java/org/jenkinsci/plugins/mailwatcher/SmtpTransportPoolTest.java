@@ -0,0 +1,269 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Provider;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.URLName;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SmtpTransportPoolTest {
+
+    private static final SmtpSettings SETTINGS = new SmtpSettings("localhost", "25", false, false, null, null);
+    private static final long MINUTE = 60_000;
+
+    private Session session;
+
+    @Before
+    public void setUp() throws Exception {
+
+        FakeTransport.reset();
+        session = Session.getInstance(new Properties());
+        session.setProvider(new Provider(
+                Provider.Type.TRANSPORT, "smtp", FakeTransport.class.getName(), "mail-watcher-plugin", "test"
+        ));
+    }
+
+    @Test
+    public void reuseConnection() throws Exception {
+
+        final SmtpTransportPool pool = new SmtpTransportPool(2, MINUTE, MINUTE, 100);
+
+        pool.send(SETTINGS, message());
+        pool.send(SETTINGS, message());
+        pool.send(SETTINGS, message());
+
+        assertEquals(1, FakeTransport.connects.get());
+        assertEquals(3, FakeTransport.sent.get());
+        assertEquals(1, pool.idleConnections());
+    }
+
+    @Test
+    public void recycleConnectionAfterMaxMessages() throws Exception {
+
+        final SmtpTransportPool pool = new SmtpTransportPool(2, MINUTE, MINUTE, 2);
+
+        pool.send(SETTINGS, message());
+        pool.send(SETTINGS, message());
+        pool.send(SETTINGS, message());
+
+        assertEquals(2, FakeTransport.connects.get());
+        assertEquals(1, FakeTransport.closed.get());
+    }
+
+    @Test
+    public void reconnectWhenPooledConnectionFails() throws Exception {
+
+        final SmtpTransportPool pool = new SmtpTransportPool(2, MINUTE, MINUTE, 100);
+
+        pool.send(SETTINGS, message());
+        FakeTransport.dropConnections();
+        pool.send(SETTINGS, message());
+
+        assertEquals(2, FakeTransport.connects.get());
+        assertEquals(1, FakeTransport.failed.get());
+        assertEquals(2, FakeTransport.sent.get());
+    }
+
+    @Test
+    public void checkIdleConnectionBeforeReuse() throws Exception {
+
+        final SmtpTransportPool pool = new SmtpTransportPool(2, MINUTE, 0, 100);
+
+        pool.send(SETTINGS, message());
+        FakeTransport.dropConnections();
+        pool.send(SETTINGS, message());
+
+        assertEquals(2, FakeTransport.connects.get());
+        assertEquals(0, FakeTransport.failed.get());
+    }
+
+    @Test
+    public void doNotShareConnectionsBetweenSettings() throws Exception {
+
+        final SmtpTransportPool pool = new SmtpTransportPool(2, MINUTE, MINUTE, 100);
+
+        pool.send(SETTINGS, message());
+        pool.send(new SmtpSettings("relay.example.com", "25", false, false, null, null), message());
+
+        assertEquals(2, FakeTransport.connects.get());
+        assertEquals(2, pool.idleConnections());
+    }
+
+    @Test
+    public void evictIdleConnections() throws Exception {
+
+        final SmtpTransportPool pool = new SmtpTransportPool(2, 0, MINUTE, 100);
+
+        pool.send(SETTINGS, message());
+        pool.evictIdle();
+
+        assertEquals(0, pool.idleConnections());
+        assertEquals(1, FakeTransport.closed.get());
+    }
+
+    @Test
+    public void keepConnectionWhenMailIsRejected() throws Exception {
+
+        final SmtpTransportPool pool = new SmtpTransportPool(2, MINUTE, MINUTE, 100);
+
+        FakeTransport.refusal.set(550);
+        try {
+
+            pool.send(SETTINGS, message());
+            fail();
+        } catch (SMTPSendFailedException ex) {
+
+            assertFalse(SmtpTransportPool.unavailable(ex));
+        }
+        pool.send(SETTINGS, message());
+
+        assertEquals(1, FakeTransport.connects.get());
+        assertEquals(0, FakeTransport.closed.get());
+        assertEquals(1, pool.idleConnections());
+    }
+
+    @Test
+    public void discardConnectionWhenRelayIsUnavailable() throws Exception {
+
+        final SmtpTransportPool pool = new SmtpTransportPool(2, MINUTE, MINUTE, 100);
+
+        FakeTransport.refusal.set(421);
+        try {
+
+            pool.send(SETTINGS, message());
+            fail();
+        } catch (SMTPSendFailedException ex) {
+
+            assertTrue(SmtpTransportPool.unavailable(ex));
+        }
+        assertEquals(1, FakeTransport.closed.get());
+        assertEquals(0, pool.idleConnections());
+
+        pool.send(SETTINGS, message());
+        assertEquals(2, FakeTransport.connects.get());
+    }
+
+    private MimeMessage message() throws MessagingException {
+
+        final MimeMessage msg = new MimeMessage(session);
+        msg.setFrom(new InternetAddress("jenkins@example.com"));
+        msg.setRecipients(Message.RecipientType.TO, InternetAddress.parse("watcher@example.com"));
+        msg.setSubject("subject");
+        msg.setText("body");
+        return msg;
+    }
+
+    public static final class FakeTransport extends Transport {
+
+        private static final AtomicInteger connects = new AtomicInteger();
+        private static final AtomicInteger sent = new AtomicInteger();
+        private static final AtomicInteger failed = new AtomicInteger();
+        private static final AtomicInteger closed = new AtomicInteger();
+        private static final AtomicInteger generation = new AtomicInteger();
+        // SMTP reply refusing the next message, none when 0
+        private static final AtomicInteger refusal = new AtomicInteger();
+
+        private int connectedGeneration;
+
+        public FakeTransport(final Session session, final URLName url) {
+
+            super(session, url);
+        }
+
+        private static void reset() {
+
+            connects.set(0);
+            sent.set(0);
+            failed.set(0);
+            closed.set(0);
+            refusal.set(0);
+        }
+
+        /**
+         * Relay forgets all established connections.
+         */
+        private static void dropConnections() {
+
+            generation.incrementAndGet();
+        }
+
+        @Override
+        protected boolean protocolConnect(String host, int port, String user, String password) {
+
+            connects.incrementAndGet();
+            connectedGeneration = generation.get();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isConnected() {
+
+            return super.isConnected() && connectedGeneration == generation.get();
+        }
+
+        @Override
+        public void sendMessage(final Message msg, final Address[] addresses) throws MessagingException {
+
+            if (connectedGeneration != generation.get()) {
+
+                failed.incrementAndGet();
+                throw new MessagingException("Connection reset");
+            }
+
+            final int code = refusal.getAndSet(0);
+            if (code != 0) {
+
+                failed.incrementAndGet();
+                throw new SMTPSendFailedException("MAIL FROM", code, code + " Refused", null, null, addresses, null);
+            }
+
+            sent.incrementAndGet();
+        }
+
+        @Override
+        public synchronized void close() throws MessagingException {
+
+            closed.incrementAndGet();
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TemplateTest {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    @Test
+    public void render() {
+
+        values.put("name", "job");
+        values.put("subject", "updated");
+
+        assertEquals("Job job updated", render("Job ${name} ${subject}"));
+        assertEquals("job", render("${name}"));
+        assertEquals("job job", render("${ name } ${name}"));
+        assertEquals("", render(""));
+        assertEquals("plain text", render("plain text"));
+    }
+
+    @Test
+    public void keepUnknownAndMalformedPlaceholders() {
+
+        values.put("name", "job");
+
+        assertEquals("${unknown} job", render("${unknown} ${name}"));
+        assertEquals("job ${name", render("${name} ${name"));
+        assertEquals("$name {name}", render("$name {name}"));
+    }
+
+    @Test
+    public void defaultsReproduceFormerFormat() {
+
+        final MailWatcherMailer mailer = mock(MailWatcherMailer.class);
+        when(mailer.initiatorId()).thenReturn("someone");
+
+        final MailWatcherNotification notification = Notifications.of(Notifications.builder(mailer)
+                .subject("Job a updated").body("The body").url("job/a/")
+        );
+
+        assertEquals("mail-watcher-plugin: Job a updated", notification.getMailSubject());
+        assertEquals(
+                String.format("Url: http://example.com/job/a/%nInitiator: someone%n\n\nThe body"),
+                notification.getMailBody()
+        );
+    }
+
+    private String render(final String template) {
+
+        final StringBuilder out = new StringBuilder();
+        Template.compile(template).render(out, (name, sb) -> {
+            final String value = values.get(name);
+            if (value == null) return false;
+            sb.append(value);
+            return true;
+        });
+        return out.toString();
+    }
+}
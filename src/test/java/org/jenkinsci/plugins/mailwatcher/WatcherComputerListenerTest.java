@@ -24,15 +24,21 @@
 package org.jenkinsci.plugins.mailwatcher;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.jenkinsci.plugins.mailwatcher.MailWatcherNotification.NEWLINE;
 import static org.junit.Assert.assertEquals;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import hudson.model.Computer;
 import hudson.model.Node;
-import hudson.model.User;
 import hudson.slaves.NodeProperty;
 import hudson.slaves.NodePropertyDescriptor;
 import hudson.slaves.NodeDescriptor;
@@ -40,6 +46,8 @@ import hudson.slaves.OfflineCause;
 import hudson.util.DescribableList;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import jakarta.mail.MessagingException;
 
@@ -56,17 +64,24 @@ public class WatcherComputerListenerTest {
 
     final private MailWatcherMailer mailer = mock(MailWatcherMailer.class);
 
+    // Computers known to Jenkins by name
+    final private Map<String, Computer> computers = new HashMap<>();
+
     final private WatcherComputerListener listener = new WatcherComputerListener(
             mailer,
             "http://example.com/my-jenkins/"
-    );
+    ) {
+        @Override
+        Computer computer(final String name) {
+
+            return computers.get(name);
+        }
+    };
 
     @Before
     public void setUp() {
 
-        final User initiator = mock(User.class);
-        when(initiator.getId()).thenReturn(FAKE_INITIATOR);
-        when(mailer.getDefaultInitiator()).thenReturn(initiator);
+        when(mailer.initiatorId()).thenReturn(FAKE_INITIATOR);
     }
 
     @Test
@@ -129,14 +144,195 @@ public class WatcherComputerListenerTest {
         assertTrue(notification.shouldNotify());
     }
 
+    @Test
+    public void doNothingIfThereAreNoRecipients() throws MessagingException {
+
+        final Computer computer = getComputerStub();
+        final Node node = computer.getNode();
+        when(node.getNodeProperties()).thenReturn(getPropertiesList());
+
+        listener.onOffline(computer);
+        listener.onOnline(computer, null);
+        listener.onTemporarilyOffline(computer, null);
+        listener.onTemporarilyOnline(computer);
+
+        verify(mailer, after(500).never()).send(any(MailWatcherNotification.class));
+        verify(computer, never()).getDisplayName();
+    }
+
+    @Test
+    public void doNothingIfThereAreNoRecipientsForTransition() throws MessagingException {
+
+        final Computer computer = getComputerStub();
+        final Node node = computer.getNode();
+        when(node.getNodeProperties()).thenReturn(getPropertiesList(
+                new WatcherNodeProperty("online <recipient@list.com>", null)
+        ));
+
+        listener.onOffline(computer);
+        listener.onOffline(computer, mock(OfflineCause.class));
+
+        verify(mailer, after(500).never()).send(any(MailWatcherNotification.class));
+        verify(computer, never()).getDisplayName();
+    }
+
+    @Test
+    public void doNotTrackComputersWithBlankRecipients() throws MessagingException {
+
+        final Computer computer = getComputerStub();
+        final Node node = computer.getNode();
+        when(node.getNodeProperties()).thenReturn(getPropertiesList(
+                new WatcherNodeProperty("", " ")
+        ));
+
+        listener.onOffline(computer);
+        listener.onOnline(computer, null);
+        listener.onTemporarilyOffline(computer, null);
+
+        verify(mailer, after(500).never()).send(any(MailWatcherNotification.class));
+        // Not watched so its transitions are not even recorded
+        verify(computer, never()).getName();
+    }
+
+    @Test
+    public void summarizeReconnectAfterRestart() throws MessagingException {
+
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setGraceSeconds(300);
+        try {
+
+            final Computer back = getComputerStub("back");
+            final Computer missing = getComputerStub("missing");
+
+            listener.beginGrace();
+            listener.onOnline(back, null);
+            listener.awaitReconnect(back, missing);
+            listener.onOffline(missing);
+
+            verify(mailer, after(500).never()).send(any(MailWatcherNotification.class));
+
+            listener.endGrace();
+
+            // Both lists name the same address
+            final MailWatcherNotification notification = captureNotification();
+            assertEquals(EventType.COMPUTERS_RECONNECTED, notification.getType());
+            assertEquals("online <recipient@list.com>", notification.getRecipients());
+            assertEquals("mail-watcher-plugin: Jenkins restarted, 1 of 2 computers reconnected", notification.getMailSubject());
+            assertThat(notification.getMailBody(), containsString("Reconnected:" + NEWLINE + "    back" + NEWLINE));
+            assertThat(notification.getMailBody(), containsString("Still offline:" + NEWLINE + "    missing" + NEWLINE));
+
+            // Reported on its own once the grace period is over
+            listener.onOnline(missing, null);
+            verify(mailer, timeout(5000).times(2)).send(any(MailWatcherNotification.class));
+        } finally {
+
+            config.setGraceSeconds(0);
+        }
+    }
+
+    @Test
+    public void doNotSummarizeComputersRemovedDuringGrace() throws MessagingException {
+
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setGraceSeconds(300);
+        try {
+
+            final Computer back = getComputerStub("back");
+            final Computer removed = getComputerStub("removed");
+
+            listener.beginGrace();
+            listener.onOnline(back, null);
+            listener.awaitReconnect(back, removed);
+            computers.remove("removed");
+
+            listener.endGrace();
+
+            final MailWatcherNotification notification = captureNotification();
+            assertEquals("mail-watcher-plugin: Jenkins restarted, 1 of 1 computers reconnected", notification.getMailSubject());
+            assertThat(notification.getMailBody(), not(containsString("removed")));
+        } finally {
+
+            config.setGraceSeconds(0);
+        }
+    }
+
+    @Test
+    public void endGraceOnceAllComputersReconnect() throws MessagingException {
+
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setGraceSeconds(300);
+        try {
+
+            final Computer computer = getComputerStub();
+
+            listener.beginGrace();
+            listener.awaitReconnect(computer);
+            listener.onOnline(computer, null);
+
+            final MailWatcherNotification notification = captureNotification();
+            assertEquals("mail-watcher-plugin: Jenkins restarted, 1 of 1 computers reconnected", notification.getMailSubject());
+            assertThat(notification.getMailBody(), containsString("Reconnected:" + NEWLINE + "    cmpName" + NEWLINE));
+        } finally {
+
+            config.setGraceSeconds(0);
+        }
+    }
+
+    @Test
+    public void retainNoModelObjects() throws Exception {
+
+        listener.onOffline(getComputerStub());
+
+        // Neither the computer nor its node, user or owner
+        final MailWatcherNotification notification = captureNotification();
+        Notifications.assertRetainsNoModelObjects(notification);
+        Notifications.assertFootprintWithin(notification, Notifications.NOTIFICATION_BUDGET);
+    }
+
+    @Test
+    public void retainNoModelObjectsInReconnectSummary() throws Exception {
+
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setGraceSeconds(300);
+        try {
+
+            final Computer computer = getComputerStub();
+
+            listener.beginGrace();
+            listener.awaitReconnect(computer);
+            listener.onOnline(computer, null);
+
+            Notifications.assertRetainsNoModelObjects(captureNotification());
+        } finally {
+
+            config.setGraceSeconds(0);
+        }
+    }
+
+    @Test
+    public void ignoreComputersDisconnectedByShutdown() throws MessagingException {
+
+        listener.shutdown();
+        listener.onOffline(getComputerStub());
+
+        verify(mailer, after(500).never()).send(any(MailWatcherNotification.class));
+    }
+
     private Computer getComputerStub() {
 
+        return getComputerStub("cmpName");
+    }
+
+    private Computer getComputerStub(final String name) {
+
         final Computer computerStub = mock(Computer.class);
         final Node nodeStub = getNodeStub();
 
-        when(computerStub.getDisplayName()).thenReturn("cmpName");
+        when(computerStub.getName()).thenReturn(name);
+        when(computerStub.getDisplayName()).thenReturn(name);
         when(computerStub.getUrl()).thenReturn("fake/computer/url");
         when(computerStub.getNode()).thenReturn(nodeStub);
+        computers.put(name, computerStub);
 
         return computerStub;
     }
@@ -169,7 +365,7 @@ public class WatcherComputerListenerTest {
                 .forClass(MailWatcherNotification.class)
         ;
 
-        verify(mailer).send(argument.capture());
+        verify(mailer, timeout(5000)).send(argument.capture());
 
         return argument.getValue();
     }
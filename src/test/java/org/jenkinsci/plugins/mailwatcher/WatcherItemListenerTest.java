@@ -25,17 +25,25 @@ package org.jenkinsci.plugins.mailwatcher;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertFalse;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import hudson.model.Item;
+import hudson.model.ItemGroup;
 import hudson.model.Job;
-import hudson.model.User;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import jakarta.mail.MessagingException;
 
@@ -55,7 +63,7 @@ public class WatcherItemListenerTest {
     protected MailWatcherNotification notification;
     private ConfigHistory configHistory;
 
-    private WatcherItemListener listener;
+    protected WatcherItemListener listener;
 
     protected Job<?, ?> jobStub;
 
@@ -65,9 +73,7 @@ public class WatcherItemListenerTest {
         mailer = mock(MailWatcherMailer.class);
         listener = new WatcherItemListener(mailer, INSTANCE_URL);
 
-        final User initiator = mock(User.class);
-        when(initiator.getId()).thenReturn(FAKE_INITIATOR);
-        when(mailer.getDefaultInitiator()).thenReturn(initiator);
+        when(mailer.initiatorId()).thenReturn(FAKE_INITIATOR);
 
         configHistory = mock(ConfigHistory.class);
         when(mailer.configHistory()).thenReturn(configHistory);
@@ -123,6 +129,227 @@ public class WatcherItemListenerTest {
         assertTrue(notification.shouldNotify());
     }
 
+    @Test
+    public void doNotRetainJob() throws MessagingException {
+
+        Mockito.when(jobStub.getFullDisplayName()).thenReturn("deleted_job_name");
+
+        listener.onDeleted(jobStub);
+
+        notification = captureNotification();
+        Mockito.reset(jobStub);
+
+        assertEquals("mail-watcher-plugin: Job deleted_job_name deleted", notification.getMailSubject());
+        checkBody();
+    }
+
+    @Test
+    public void onMoved() throws MessagingException {
+
+        final Job<?, ?> job = getJobStub("new/fake", "fake <recipient@list.com>");
+
+        listener.onLocationChanged(job, "old/fake", "new/fake");
+
+        notification = captureNotification();
+        assertEquals("fake <recipient@list.com>", notification.getRecipients());
+        assertEquals("mail-watcher-plugin: Job new/fake moved from old/fake", notification.getMailSubject());
+    }
+
+    @Test
+    public void renameIsNotReportedAsMove() throws MessagingException {
+
+        final Job<?, ?> job = getJobStub("folder/new", "fake <recipient@list.com>");
+
+        listener.onLocationChanged(job, "folder/old", "folder/new");
+
+        verify(mailer, after(500).never())
+                .send(any(MailWatcherNotification.class))
+        ;
+    }
+
+    @Test
+    public void coalesceFolderDeletion() throws MessagingException {
+
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setCoalesceSeconds(2);
+        try {
+
+            listener.onDeleted(getJobStub("folder/a", "fake <recipient@list.com>"));
+            listener.onDeleted(getJobStub("folder/b", "fake <recipient@list.com>"));
+            listener.onDeleted(getJobStub("folder/c", "fake <recipient@list.com>, other@list.com"));
+
+            final ArgumentCaptor<MailWatcherNotification> captor = ArgumentCaptor.forClass(MailWatcherNotification.class);
+            verify(mailer, timeout(5000).times(2)).send(captor.capture());
+
+            final MailWatcherNotification all = captor.getAllValues().get(0);
+            assertEquals("fake <recipient@list.com>", all.getRecipients());
+            assertEquals("mail-watcher-plugin: 3 jobs deleted from folder", all.getMailSubject());
+            assertThat(all.getMailBody(), containsString("Job folder/a deleted"));
+            assertThat(all.getMailBody(), containsString("Job folder/b deleted"));
+            assertThat(all.getMailBody(), containsString("Job folder/c deleted"));
+
+            final MailWatcherNotification one = captor.getAllValues().get(1);
+            assertEquals("other@list.com", one.getRecipients());
+            assertEquals("mail-watcher-plugin: 1 job deleted from folder", one.getMailSubject());
+            assertThat(one.getMailBody(), containsString("Job folder/c deleted"));
+        } finally {
+
+            config.setCoalesceSeconds(0);
+        }
+    }
+
+    @Test
+    public void reportWhoDeletedFolder() throws MessagingException {
+
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setCoalesceSeconds(2);
+        try {
+
+            // Only the listener thread acts on behalf of the user
+            final Thread caller = Thread.currentThread();
+            when(mailer.initiatorId()).thenAnswer(invocation -> Thread.currentThread() == caller ? FAKE_INITIATOR : "SYSTEM");
+
+            listener.onDeleted(getJobStub("folder/a", "fake <recipient@list.com>"));
+            listener.onDeleted(getJobStub("folder/b", "fake <recipient@list.com>"));
+
+            notification = captureNotification();
+            assertEquals("mail-watcher-plugin: 2 jobs deleted from folder", notification.getMailSubject());
+            assertEquals(FAKE_INITIATOR, notification.pairs().get("Initiator"));
+            assertThat(notification.getMailBody(), containsString(FAKE_INITIATOR));
+        } finally {
+
+            config.setCoalesceSeconds(0);
+        }
+    }
+
+    @Test
+    public void flushPendingFolderDeletionOnShutdown() throws MessagingException {
+
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setCoalesceSeconds(2);
+        try {
+
+            listener.onDeleted(getJobStub("folder/a", "fake <recipient@list.com>"));
+            listener.onDeleted(getJobStub("folder/b", "fake <recipient@list.com>"));
+            verify(mailer, never()).send(any(MailWatcherNotification.class));
+
+            try {
+
+                WindowedBuffer.shutdown();
+
+                // Well before the coalescing window is over
+                notification = captureNotification(1000);
+            } finally {
+
+                WindowedBuffer.startup();
+            }
+
+            assertEquals("mail-watcher-plugin: 2 jobs deleted from folder", notification.getMailSubject());
+        } finally {
+
+            config.setCoalesceSeconds(0);
+        }
+    }
+
+    @Test
+    public void reportPendingUpdateBeforeRename() throws Exception {
+
+        final Job<?, ?> job = getJobStub("folder/old", "fake <recipient@list.com>");
+        final ItemGroup<?> folder = mock(ItemGroup.class);
+        when(folder.getFullName()).thenReturn("folder");
+        Mockito.doReturn(folder).when(job).getParent();
+
+        // The update takes longer to send than the rename, the old and new name hash to different lanes
+        final List<String> sent = new CopyOnWriteArrayList<>();
+        final CountDownLatch delivered = new CountDownLatch(2);
+        when(mailer.send(any(MailWatcherNotification.class))).thenAnswer(invocation -> {
+
+            final String subject = invocation.<MailWatcherNotification>getArgument(0).getMailSubject();
+            if (subject.endsWith("updated")) Thread.sleep(500);
+            sent.add(subject);
+            delivered.countDown();
+            return null;
+        });
+
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setDebounceSeconds(10);
+        try {
+
+            listener.onUpdated(job);
+            when(job.getFullName()).thenReturn("folder/new");
+            when(job.getFullDisplayName()).thenReturn("folder/new");
+            Mockito.doReturn(job).when(mailer).job("folder/new");
+            Mockito.doReturn(null).when(mailer).job("folder/old");
+            listener.onRenamed(job, "old", "new");
+
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        } finally {
+
+            config.setDebounceSeconds(0);
+        }
+
+        assertEquals(Arrays.asList(
+                "mail-watcher-plugin: Job folder/new updated", "mail-watcher-plugin: Job folder/new renamed from old"
+        ), sent);
+    }
+
+    @Test
+    public void retainNoModelObjects() throws Exception {
+
+        listener.onUpdated(jobStub);
+
+        final MailWatcherNotification notification = captureNotification();
+        Notifications.assertFootprintWithin(notification, Notifications.NOTIFICATION_BUDGET);
+
+        // Neither the job nor its node, user or owner, not even once looked up
+        notification.getMailBody();
+        Notifications.assertRetainsNoModelObjects(notification);
+    }
+
+    @Test
+    public void lookUpJobOnlyOnceBuilt() throws Exception {
+
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setDebounceSeconds(2);
+        try {
+
+            listener.onUpdated(jobStub);
+            listener.onUpdated(jobStub);
+            listener.onUpdated(jobStub);
+
+            // Nothing but the name is taken on the listener thread
+            verify(jobStub, never()).getShortUrl();
+            verify(jobStub, never()).getFullDisplayName();
+            verify(mailer, never()).configHistory();
+
+            notification = captureNotification();
+        } finally {
+
+            config.setDebounceSeconds(0);
+        }
+
+        notification.getMailSubject();
+        notification.getMailBody();
+        verify(mailer, times(1)).job("fake");
+    }
+
+    @Test
+    public void retainNoModelObjectsInFolderNotification() throws Exception {
+
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setCoalesceSeconds(2);
+        try {
+
+            listener.onDeleted(getJobStub("folder/a", "fake <recipient@list.com>"));
+            listener.onDeleted(getJobStub("folder/b", "fake <recipient@list.com>"));
+
+            Notifications.assertRetainsNoModelObjects(captureNotification());
+        } finally {
+
+            config.setCoalesceSeconds(0);
+        }
+    }
+
     @Test
     public void ignoreItemsThatAreNotJobs() throws MessagingException {
 
@@ -145,7 +372,7 @@ public class WatcherItemListenerTest {
         ;
 
         listener.onDeleted(jobStub);
-        assertFalse(captureNotification().shouldNotify());
+        verify(mailer, after(500).never()).send(any(MailWatcherNotification.class));
         Mockito.verifyNoInteractions(configHistory);
     }
 
@@ -157,7 +384,7 @@ public class WatcherItemListenerTest {
         ;
 
         listener.onRenamed(jobStub, "oldName", "newName");
-        assertFalse(captureNotification().shouldNotify());
+        verify(mailer, after(500).never()).send(any(MailWatcherNotification.class));
         Mockito.verifyNoInteractions(configHistory);
     }
 
@@ -169,7 +396,7 @@ public class WatcherItemListenerTest {
         ;
 
         listener.onUpdated(jobStub);
-        assertFalse(captureNotification().shouldNotify());
+        verify(mailer, after(500).never()).send(any(MailWatcherNotification.class));
         Mockito.verifyNoInteractions(configHistory);
     }
 
@@ -182,17 +409,40 @@ public class WatcherItemListenerTest {
         ;
 
         when(jobStub.getShortUrl()).thenReturn("fake/job/url");
+        when(jobStub.getFullName()).thenReturn("fake");
+        Mockito.doReturn(jobStub).when(mailer).job("fake");
+
+        return jobStub;
+    }
+
+    private Job<?, ?> getJobStub(final String fullName, final String recipients) {
+
+        final Job<?, ?> jobStub = Mockito.mock(Job.class);
+
+        when(jobStub.getProperty(WatcherJobProperty.class))
+            .thenReturn(new WatcherJobProperty(recipients))
+        ;
+
+        when(jobStub.getShortUrl()).thenReturn("job/" + fullName + "/");
+        when(jobStub.getFullName()).thenReturn(fullName);
+        when(jobStub.getFullDisplayName()).thenReturn(fullName);
+        Mockito.doReturn(jobStub).when(mailer).job(fullName);
 
         return jobStub;
     }
 
-    private MailWatcherNotification captureNotification() throws MessagingException {
+    protected MailWatcherNotification captureNotification() throws MessagingException {
+
+        return captureNotification(5000);
+    }
+
+    private MailWatcherNotification captureNotification(final long millis) throws MessagingException {
 
         ArgumentCaptor<MailWatcherNotification> argument = ArgumentCaptor
                 .forClass(MailWatcherNotification.class)
         ;
 
-        verify(mailer).send(argument.capture());
+        verify(mailer, timeout(millis)).send(argument.capture());
 
         return argument.getValue();
     }
@@ -26,19 +26,30 @@ package org.jenkinsci.plugins.mailwatcher;
 import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.startsWith;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
-import hudson.plugins.jobConfigHistory.ConfigInfo;
+import hudson.model.Job;
+import hudson.plugins.jobConfigHistory.HistoryDescr;
 import hudson.plugins.jobConfigHistory.JobConfigHistory;
-import hudson.plugins.jobConfigHistory.JobConfigHistoryProjectAction;
+import hudson.plugins.jobConfigHistory.JobConfigHistoryConsts;
 
-import java.io.IOException;
 import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Date;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.jenkinsci.plugins.mailwatcher.jobConfigHistory.ConfigHistory;
+import org.jenkinsci.plugins.mailwatcher.jobConfigHistory.ConfigHistory.Change;
 import org.junit.Before;
+import org.junit.Test;
 import org.mockito.Mockito;
 import org.mockito.stubbing.Answer;
 
@@ -52,6 +63,12 @@ public class WatcherItemListenerWithJobConfigHistoryPluginTest extends WatcherIt
             RHS_TIMESTAMP, LHS_TIMESTAMP
     );
 
+    private final Queue<Change> revisions = new ArrayDeque<>();
+    private final Queue<String> saves = new ArrayDeque<>();
+    private final SortedMap<String, HistoryDescr> stored = new TreeMap<>();
+    private int loads;
+    private ConfigHistory history;
+
     @Override
     protected void checkBody() {
 
@@ -82,26 +99,91 @@ public class WatcherItemListenerWithJobConfigHistoryPluginTest extends WatcherIt
         final JobConfigHistory plugin = mock(JobConfigHistory.class);
         when(mailer.plugin(JobConfigHistory.class)).thenReturn(plugin);
 
-        when(mailer.configHistory()).thenReturn(new ConfigHistory(plugin));
+        history = new ConfigHistory(plugin) {
+            @Override
+            protected Change loadLastChange(final Job<?, ?> job) {
+
+                loads++;
+                return revisions.size() > 1 ? revisions.poll() : revisions.peek();
+            }
+
+            @Override
+            protected String savedRevision(final Job<?, ?> job, final String previous) {
+
+                return saves.poll();
+            }
+
+            @Override
+            protected SortedMap<String, HistoryDescr> revisions(final Job<?, ?> job) {
+
+                return stored;
+            }
+        };
+        when(mailer.configHistory()).thenReturn(history);
+    }
+
+    private void givenSomeHistory() {
+
+        revisions.add(new Change(RHS_TIMESTAMP, LHS_TIMESTAMP));
+    }
+
+    @Test
+    public void collapseBurstOfUpdates() throws Exception {
+
+        final SimpleDateFormat format = new SimpleDateFormat(JobConfigHistoryConsts.ID_FORMATTER);
+        final long now = System.currentTimeMillis();
+        final String before = format.format(new Date(now - 3600_000));
+        final String last = format.format(new Date(now + 1000));
+        stored.put(format.format(new Date(now - 7200_000)), null);
+        stored.put(before, null);
+
+        final MailWatcherConfiguration config = MailWatcherConfiguration.get();
+        config.setDebounceSeconds(2);
+        try {
+            listener.onUpdated(jobStub);
+            stored.put(format.format(new Date(now)), null);
+            listener.onUpdated(jobStub);
+            stored.put(last, null);
+            listener.onUpdated(jobStub);
+
+            notification = captureNotification();
+            verify(mailer, after(1000).times(1)).send(any(MailWatcherNotification.class));
+        } finally {
+
+            config.setDebounceSeconds(0);
+        }
+
+        // Changes recorded by the whole burst
+        assertThat(notification.pairs().get("Change"), endsWith("timestamp1=" + before + "&timestamp2=" + last));
     }
 
-    private void givenSomeHistory() throws IOException {
+    @Test
+    public void lookupRevisionsOnlyOnceBetweenSaves() throws Exception {
 
-        final JobConfigHistoryProjectAction action = Mockito.mock(
-                JobConfigHistoryProjectAction.class
-        );
-        when(jobStub.getAction(JobConfigHistoryProjectAction.class)).thenReturn(action);
+        revisions.clear();
+        revisions.add(new Change("t0", "t1"));
+        saves.add("t2");
 
-        final List<ConfigInfo> configs = Arrays.asList(
-                config(LHS_TIMESTAMP), config(RHS_TIMESTAMP)
-        );
-        Mockito.when(action.getJobConfigs()).thenReturn(configs);
+        assertThat(history.lastChange(jobStub).getTo(), endsWith("t1"));
+        assertThat(history.lastChange(jobStub).getTo(), endsWith("t1"));
+
+        history.saved(jobStub);
+        final Change change = history.lastChange(jobStub);
+        assertEquals("t1", change.getFrom());
+        assertEquals("t2", change.getTo());
+        assertEquals(1, loads);
     }
 
-    private ConfigInfo config(final String date) {
+    @Test
+    public void keepChangeWhenSavedRevisionIsUnknown() throws Exception {
+
+        revisions.clear();
+        revisions.addAll(Arrays.asList(new Change("t0", "t1"), new Change("t1", "t2")));
+
+        assertThat(history.lastChange(jobStub).getTo(), endsWith("t1"));
 
-        final ConfigInfo config = mock(ConfigInfo.class);
-        when(config.getDate()).thenReturn(date);
-        return config;
+        history.saved(jobStub);
+        assertThat(history.lastChange(jobStub).getTo(), endsWith("t1"));
+        assertEquals(1, loads);
     }
 }
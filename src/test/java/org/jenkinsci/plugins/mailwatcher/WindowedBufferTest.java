@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.mailwatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class WindowedBufferTest {
+
+    // Far enough in the future for the real timer not to interfere
+    private final long base = System.currentTimeMillis() + 3_600_000;
+
+    private final List<String> flushed = new ArrayList<>();
+    private final List<WindowedBuffer.Batch<String>> batches = new ArrayList<>();
+
+    @Test
+    public void flushWhenFixedWindowElapses() {
+
+        final WindowedBuffer<String, String> buffer = buffer(false, 10, 10);
+
+        buffer.add("k", "a", base);
+        buffer.add("k", "b", base + 500);
+
+        buffer.expire(base + 999);
+        assertTrue(flushed.isEmpty());
+
+        buffer.expire(base + 1000);
+        assertEquals(Arrays.asList("k"), flushed);
+        assertEquals(Arrays.asList("a", "b"), batches.get(0).events());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void extendTrailingWindowWithEveryEvent() {
+
+        final WindowedBuffer<String, String> buffer = buffer(true, 1, 10);
+
+        buffer.add("k", "a", base);
+        buffer.add("k", "b", base + 800);
+
+        buffer.expire(base + 1000);
+        assertTrue(flushed.isEmpty());
+
+        buffer.expire(base + 1800);
+        assertEquals(1, flushed.size());
+        assertEquals("a", batches.get(0).first());
+        assertEquals("b", batches.get(0).last());
+        assertEquals(1, batches.get(0).dropped());
+    }
+
+    @Test
+    public void doNotExtendTrailingWindowIndefinitely() {
+
+        final WindowedBuffer<String, String> buffer = buffer(true, 10, 10);
+
+        buffer.add("k", "a", base);
+        buffer.add("k", "b", base + 900);
+        buffer.add("k", "c", base + 1800);
+
+        buffer.expire(base + 2000);
+        assertEquals(1, flushed.size());
+        assertEquals(3, batches.get(0).total());
+    }
+
+    @Test
+    public void boundBatches() {
+
+        final WindowedBuffer<String, String> buffer = buffer(false, 2, 1);
+
+        assertTrue(buffer.add("k", "a", base));
+        assertTrue(buffer.add("k", "b", base));
+        assertTrue(buffer.add("k", "c", base));
+        assertFalse(buffer.add("other", "a", base));
+
+        buffer.flushAll();
+        assertEquals(Arrays.asList("a", "b"), batches.get(0).events());
+        assertEquals("c", batches.get(0).last());
+        assertEquals(1, batches.get(0).dropped());
+    }
+
+    @Test
+    public void deliverRightAwayOnceClosed() {
+
+        final WindowedBuffer<String, String> downstream = buffer(false, 10, 10);
+        final WindowedBuffer<String, String> upstream = new WindowedBuffer<>(
+                "upstream", () -> 1000, false, 10, 10,
+                (key, batch) -> downstream.add(key, batch.last())
+        );
+
+        upstream.add("k", "a", base);
+        upstream.close();
+        downstream.close();
+
+        // Flushing downstream before upstream does not lose events
+        downstream.flushAll();
+        upstream.flushAll();
+
+        assertEquals(Arrays.asList("k"), flushed);
+        assertEquals(Arrays.asList("a"), batches.get(0).events());
+        assertEquals(0, downstream.size());
+
+        downstream.add("k", "b", base);
+        assertEquals(Arrays.asList("k", "k"), flushed);
+    }
+
+    @Test
+    public void flushKeyExplicitly() {
+
+        final WindowedBuffer<String, String> buffer = buffer(false, 10, 10);
+
+        buffer.add("k", "a", base);
+        buffer.flush("k");
+        assertEquals(1, flushed.size());
+
+        buffer.add("k", "b", base + 500);
+
+        // Deadline of the batch flushed already
+        buffer.expire(base + 1000);
+        assertEquals(1, flushed.size());
+
+        buffer.expire(base + 1500);
+        assertEquals(2, flushed.size());
+        assertEquals(Arrays.asList("b"), batches.get(1).events());
+    }
+
+    private WindowedBuffer<String, String> buffer(final boolean trailing, final int maxEvents, final int maxKeys) {
+
+        return new WindowedBuffer<>("test", () -> 1000, trailing, maxEvents, maxKeys, (key, batch) -> {
+            flushed.add(key);
+            batches.add(batch);
+        });
+    }
+}